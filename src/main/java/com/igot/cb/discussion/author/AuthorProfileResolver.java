@@ -0,0 +1,271 @@
+package com.igot.cb.discussion.author;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.Row;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.igot.cb.pores.cache.CacheService;
+import com.igot.cb.pores.util.Constants;
+import com.igot.cb.transactional.cassandrautils.AsyncCassandraOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Pipeline;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves user ids to {@link AuthorSummary}s.
+ * <p>
+ * Authors are kept in a bounded in-process cache that loads in bulk from Redis first, this
+ * service's own author keys and then the shared user cache, and the Cassandra user table
+ * for the ids Redis does not have. Cassandra hits are written back under this service's
+ * {@code discussion:author:} keys, never the shared {@code user:} keys. Entries are refreshed in the background once they are
+ * older than the refresh interval, so active authors never block a search on a reload.
+ * <p>
+ * Loads run off the caller's thread and Cassandra is queried with concurrent, chunked
+ * {@code IN} reads, so callers can bound how long they wait with {@link #resolveAsync}.
+ */
+@Component
+@Slf4j
+public class AuthorProfileResolver {
+
+  @Autowired
+  private CacheService cacheService;
+  @Autowired
+  private AsyncCassandraOperation asyncCassandraOperation;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private MetricRegistry metricRegistry;
+
+  @Value("${author.profile.cache.max.size}")
+  private long cacheMaxSize;
+
+  @Value("${author.profile.cache.ttl.seconds}")
+  private long cacheTtlSeconds;
+
+  @Value("${author.profile.cache.refresh.seconds}")
+  private long cacheRefreshSeconds;
+
+  @Value("${author.profile.redis.ttl.seconds}")
+  private long redisTtlSeconds;
+
+  @Value("${author.profile.loader.threads}")
+  private int loaderThreads;
+
+  @Value("${author.profile.cassandra.chunk.size}")
+  private int cassandraChunkSize;
+
+  private ObjectReader authorReader;
+  private ExecutorService loaderExecutor;
+  private AsyncLoadingCache<String, AuthorSummary> authorCache;
+
+  @PostConstruct
+  public void init() {
+    authorReader = objectMapper.readerFor(AuthorSummary.class);
+    AtomicInteger threadCount = new AtomicInteger();
+    loaderExecutor = Executors.newFixedThreadPool(loaderThreads, runnable -> {
+      Thread thread = new Thread(runnable, "author-profile-loader-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    authorCache = Caffeine.newBuilder()
+        .maximumSize(cacheMaxSize)
+        .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+        .refreshAfterWrite(cacheRefreshSeconds, TimeUnit.SECONDS)
+        .executor(loaderExecutor)
+        .recordStats()
+        .buildAsync(new AsyncCacheLoader<String, AuthorSummary>() {
+          @Override
+          public CompletableFuture<AuthorSummary> asyncLoad(String userId, Executor executor) {
+            return asyncLoadAll(Collections.singleton(userId), executor).thenApply(authors -> authors.get(userId));
+          }
+
+          @Override
+          public CompletableFuture<Map<String, AuthorSummary>> asyncLoadAll(Iterable<? extends String> userIds,
+              Executor executor) {
+            List<String> ids = new ArrayList<>();
+            userIds.forEach(ids::add);
+            return loadAuthors(ids, executor);
+          }
+        });
+    metricRegistry.register(MetricRegistry.name(AuthorProfileResolver.class, "cache", "hits"),
+        (Gauge<Long>) () -> authorCache.synchronous().stats().hitCount());
+    metricRegistry.register(MetricRegistry.name(AuthorProfileResolver.class, "cache", "misses"),
+        (Gauge<Long>) () -> authorCache.synchronous().stats().missCount());
+    metricRegistry.register(MetricRegistry.name(AuthorProfileResolver.class, "cache", "evictions"),
+        (Gauge<Long>) () -> authorCache.synchronous().stats().evictionCount());
+    metricRegistry.register(MetricRegistry.name(AuthorProfileResolver.class, "cache", "size"),
+        (Gauge<Long>) () -> authorCache.synchronous().estimatedSize());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    loaderExecutor.shutdownNow();
+  }
+
+  /**
+   * Returns the authors found for the given ids, keyed by user id. Unknown ids are absent
+   * and are looked up again on the next call. Loads keep running after a caller stops
+   * waiting, so the authors are cached for the next request.
+   */
+  public CompletableFuture<Map<String, AuthorSummary>> resolveAsync(Collection<String> userIds) {
+    if (userIds.isEmpty()) {
+      return CompletableFuture.completedFuture(new HashMap<>());
+    }
+    return authorCache.getAll(new LinkedHashSet<>(userIds)).thenApply(HashMap::new);
+  }
+
+  /**
+   * Returns only the authors already in the local cache, without loading anything.
+   */
+  public Map<String, AuthorSummary> resolveCached(Collection<String> userIds) {
+    return new HashMap<>(authorCache.synchronous().getAllPresent(userIds));
+  }
+
+  private CompletableFuture<Map<String, AuthorSummary>> loadAuthors(List<String> ids, Executor executor) {
+    return CompletableFuture.supplyAsync(() -> {
+      // Our own copies first, then the shared user cache, in one round trip.
+      String[] keys = new String[ids.size() * 2];
+      for (int i = 0; i < ids.size(); i++) {
+        keys[i] = Constants.DISCUSSION_AUTHOR_PREFIX + ids.get(i);
+        keys[ids.size() + i] = Constants.USER_PREFIX + ids.get(i);
+      }
+      return cacheService.execute(jedis -> jedis.mget(keys));
+    }, executor).thenCompose(values -> {
+      Map<String, AuthorSummary> authors = new HashMap<>();
+      List<String> missingIds = new ArrayList<>();
+      for (int i = 0; i < ids.size(); i++) {
+        AuthorSummary author = decode(values.get(i));
+        if (author == null) {
+          author = decode(values.get(ids.size() + i));
+        }
+        if (author != null) {
+          authors.put(ids.get(i), author);
+        } else {
+          missingIds.add(ids.get(i));
+        }
+      }
+      if (missingIds.isEmpty()) {
+        return CompletableFuture.completedFuture(authors);
+      }
+      return fetchFromPrimaryAsync(missingIds).thenApply(primaryAuthors -> {
+        writeBack(primaryAuthors);
+        authors.putAll(primaryAuthors);
+        return authors;
+      });
+    });
+  }
+
+  private void writeBack(Map<String, AuthorSummary> authors) {
+    if (authors.isEmpty()) {
+      return;
+    }
+    try {
+      List<String> keys = new ArrayList<>(authors.size());
+      List<String> values = new ArrayList<>(authors.size());
+      for (Map.Entry<String, AuthorSummary> entry : authors.entrySet()) {
+        keys.add(Constants.DISCUSSION_AUTHOR_PREFIX + entry.getKey());
+        values.add(objectMapper.writeValueAsString(entry.getValue()));
+      }
+      cacheService.execute(jedis -> {
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < keys.size(); i++) {
+          pipeline.setex(keys.get(i), redisTtlSeconds, values.get(i));
+        }
+        pipeline.sync();
+        return null;
+      });
+    } catch (Exception e) {
+      log.error("AuthorProfileResolver::writeBack: failed to cache {} authors: {}", authors.size(), e.getMessage());
+    }
+  }
+
+  /**
+   * Reads the given users from the Cassandra user table, one concurrent {@code IN} query
+   * per chunk of ids.
+   */
+  public CompletableFuture<Map<String, AuthorSummary>> fetchFromPrimaryAsync(List<String> userIds) {
+    List<CompletableFuture<List<Row>>> chunks = new ArrayList<>();
+    for (int from = 0; from < userIds.size(); from += cassandraChunkSize) {
+      Map<String, Object> propertyMap = new HashMap<>();
+      propertyMap.put(Constants.ID, new ArrayList<>(userIds.subList(from, Math.min(from + cassandraChunkSize, userIds.size()))));
+      chunks.add(asyncCassandraOperation.getRecordsByPropertiesWithoutFilteringAsync(
+          Constants.KEYSPACE_SUNBIRD, Constants.USER_TABLE, propertyMap,
+          Arrays.asList(Constants.ID, Constants.FIRST_NAME, Constants.PROFILE_DETAILS), null, row -> row));
+    }
+    // Rows are parsed on the loader pool rather than on the driver's I/O thread.
+    return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApplyAsync(ignored -> {
+      Map<String, AuthorSummary> authors = new HashMap<>();
+      for (CompletableFuture<List<Row>> chunk : chunks) {
+        for (Row row : chunk.join()) {
+          AuthorSummary author = toAuthorSummary(row);
+          authors.put(author.getUserId(), author);
+        }
+      }
+      return authors;
+    }, loaderExecutor);
+  }
+
+  private AuthorSummary decode(String json) {
+    if (json == null) {
+      return null;
+    }
+    try {
+      return authorReader.readValue(json);
+    } catch (IOException e) {
+      log.error("AuthorProfileResolver::decode: invalid cached user: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Maps a user row selected as id, first name and profile details, in that order.
+   */
+  private AuthorSummary toAuthorSummary(Row row) {
+    AuthorSummary author = new AuthorSummary();
+    author.setUserId(row.getString(0));
+    author.setFirstName(row.getString(1));
+    String profileDetails = row.getString(2);
+    if (StringUtils.isNotBlank(profileDetails)) {
+      try {
+        JsonNode profile = objectMapper.readTree(profileDetails);
+        author.setProfileImageUrl(text(profile.path(Constants.PROFILE_IMG)));
+        author.setDesignation(text(profile.path(Constants.DESIGNATION_KEY)));
+        author.setDepartment(text(profile.path(Constants.EMPLOYMENT_DETAILS).path(Constants.DEPARTMENT_KEY)));
+      } catch (IOException e) {
+        log.error("AuthorProfileResolver::toAuthorSummary: invalid profile details for {}", author.getUserId(), e);
+      }
+    }
+    return author;
+  }
+
+  private static String text(JsonNode node) {
+    String value = node.textValue();
+    return StringUtils.isNotBlank(value) ? value : null;
+  }
+}
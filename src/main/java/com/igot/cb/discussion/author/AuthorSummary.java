@@ -0,0 +1,41 @@
+package com.igot.cb.discussion.author;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.igot.cb.pores.util.Constants;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * The author details attached to a discussion's createdBy field.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AuthorSummary implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  @JsonProperty(Constants.USER_ID_KEY)
+  private String userId;
+
+  @JsonProperty(Constants.FIRST_NAME_KEY)
+  private String firstName;
+
+  @JsonProperty(Constants.PROFILE_IMG_KEY)
+  private String profileImageUrl;
+
+  @JsonProperty(Constants.DESIGNATION_KEY)
+  private String designation;
+
+  @JsonProperty(Constants.DEPARTMENT)
+  private String department;
+}
@@ -59,6 +59,14 @@ public class DiscussionController {
         return new ResponseEntity<>(response, response.getResponseCode());
     }
 
+    @GetMapping("/{discussionId}/answerPosts")
+    public ResponseEntity<ApiResponse> getAnswerPosts(@PathVariable String discussionId,
+                                                      @RequestParam(value = Constants.PAGE_NUMBER, defaultValue = "0") int pageNumber,
+                                                      @RequestParam(value = Constants.PAGE_SIZE, defaultValue = "20") int pageSize) {
+        ApiResponse response = discussionService.getAnswerPosts(discussionId, pageNumber, pageSize);
+        return new ResponseEntity<>(response, response.getResponseCode());
+    }
+
     @PostMapping("/upVote/{discussionId}")
     public ResponseEntity<ApiResponse> upVote(@PathVariable String discussionId,
                                               @RequestHeader(Constants.X_AUTH_TOKEN) String token) {
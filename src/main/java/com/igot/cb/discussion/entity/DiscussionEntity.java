@@ -12,6 +12,7 @@ import org.hibernate.annotations.TypeDef;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import java.sql.Timestamp;
 
@@ -19,7 +20,9 @@ import java.sql.Timestamp;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "discussion")
+@Table(name = "discussion", indexes = {
+        @Index(name = "idx_discussion_parent_created_on", columnList = "parentDiscussionId, createdOn")
+})
 @TypeDef(name = "jsonb", typeClass = JsonBinaryType.class)
 @Entity
 public class DiscussionEntity {
@@ -33,6 +36,12 @@ public class DiscussionEntity {
 
     private Boolean isActive;
 
+    /**
+     * Set on answer posts only; answer posts are listed by this column rather than through
+     * an array on the parent document.
+     */
+    private String parentDiscussionId;
+
     private Timestamp createdOn;
 
     private Timestamp updatedOn;
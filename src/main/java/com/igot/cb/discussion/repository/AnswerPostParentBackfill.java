@@ -0,0 +1,47 @@
+package com.igot.cb.discussion.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills the parent id column of answer posts created before it existed, so that they are
+ * listed by their parent.
+ * <p>
+ * Runs on every startup in batches and only touches rows whose column is still empty, so it
+ * is safe to run again or on several instances at once. Once done, each run is a single
+ * query that updates nothing. The {@code answerPosts} array that older parents still carry is
+ * no longer maintained; {@code answerPostCount} and the answer post listing are authoritative.
+ */
+@Component
+@Slf4j
+public class AnswerPostParentBackfill implements ApplicationRunner {
+
+    @Autowired
+    private DiscussionRepository discussionRepository;
+
+    @Value("${discussion.answerPost.backfill.batch.size}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long total = 0;
+        try {
+            int updated;
+            do {
+                updated = discussionRepository.backfillParentDiscussionIds(batchSize);
+                total += updated;
+            } while (updated == batchSize);
+        } catch (Exception e) {
+            // Whatever is left is picked up on the next startup.
+            log.error("AnswerPostParentBackfill::run: failed after {} answer posts: {}", total, e.getMessage(), e);
+            return;
+        }
+        if (total > 0) {
+            log.info("AnswerPostParentBackfill::run: set the parent id of {} answer posts", total);
+        }
+    }
+}
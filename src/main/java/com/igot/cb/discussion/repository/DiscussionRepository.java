@@ -1,9 +1,57 @@
 package com.igot.cb.discussion.repository;
 
 import com.igot.cb.discussion.entity.DiscussionEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
 
 @Repository
 public interface DiscussionRepository extends JpaRepository<DiscussionEntity, String>{
+
+    @Query("SELECT d.isActive FROM DiscussionEntity d WHERE d.discussionId = :discussionId")
+    Boolean findIsActiveByDiscussionId(@Param("discussionId") String discussionId);
+
+    /**
+     * Atomically adds the given deltas to the vote counters inside the jsonb document,
+     * without reading the row into the application.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE discussion SET data = jsonb_set(jsonb_set(data, '{upVoteCount}', "
+            + "to_jsonb(COALESCE(CAST(data->>'upVoteCount' AS bigint), 0) + :upDelta)), '{downVoteCount}', "
+            + "to_jsonb(COALESCE(CAST(data->>'downVoteCount' AS bigint), 0) + :downDelta)), updated_on = :updatedOn "
+            + "WHERE discussion_id = :discussionId", nativeQuery = true)
+    int incrementVoteCounts(@Param("discussionId") String discussionId, @Param("upDelta") long upDelta,
+                            @Param("downDelta") long downDelta, @Param("updatedOn") Timestamp updatedOn);
+
+    Page<DiscussionEntity> findByParentDiscussionIdAndIsActiveTrue(String parentDiscussionId, Pageable pageable);
+
+    /**
+     * Copies the parent id from the jsonb document into the parent id column for up to
+     * {@code batchSize} answer posts created before the column existed.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE discussion SET parent_discussion_id = data->>'parentDiscussionId' WHERE discussion_id IN ("
+            + "SELECT discussion_id FROM discussion WHERE parent_discussion_id IS NULL AND data->>'type' = 'answerPost' "
+            + "AND data->>'parentDiscussionId' IS NOT NULL LIMIT :batchSize)", nativeQuery = true)
+    int backfillParentDiscussionIds(@Param("batchSize") int batchSize);
+
+    /**
+     * Atomically adds the delta to the answer post counter inside the jsonb document.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE discussion SET data = jsonb_set(data, '{answerPostCount}', "
+            + "to_jsonb(COALESCE(CAST(data->>'answerPostCount' AS bigint), 0) + :delta)), updated_on = :updatedOn "
+            + "WHERE discussion_id = :discussionId", nativeQuery = true)
+    int incrementAnswerPostCount(@Param("discussionId") String discussionId, @Param("delta") long delta,
+                                 @Param("updatedOn") Timestamp updatedOn);
 }
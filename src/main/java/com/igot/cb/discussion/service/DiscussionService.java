@@ -22,6 +22,8 @@ public interface DiscussionService {
 
     ApiResponse createAnswerPost(JsonNode answerPostData, String token);
 
+    ApiResponse getAnswerPosts(String discussionId, int pageNumber, int pageSize);
+
     ApiResponse upVote(String discussionId, String token);
 
     ApiResponse downVote(String discussionId, String token);
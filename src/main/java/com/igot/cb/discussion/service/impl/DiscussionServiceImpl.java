@@ -1,29 +1,40 @@
 package com.igot.cb.discussion.service.impl;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.datastax.driver.core.utils.UUIDs;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.fasterxml.jackson.databind.node.TextNode;
 import com.igot.cb.authentication.util.AccessTokenValidator;
+import com.igot.cb.discussion.author.AuthorProfileResolver;
+import com.igot.cb.discussion.author.AuthorSummary;
 import com.igot.cb.discussion.entity.DiscussionEntity;
 import com.igot.cb.discussion.repository.DiscussionRepository;
 import com.igot.cb.discussion.service.DiscussionService;
-import com.igot.cb.pores.cache.CacheService;
+import com.igot.cb.discussion.vote.VoteCounterAggregator;
+import com.igot.cb.discussion.vote.VoteStore;
+import com.igot.cb.pores.cache.CacheCodec;
+import com.igot.cb.pores.cache.CacheStampedeGuard;
+import com.igot.cb.pores.cache.SearchCacheInvalidator;
+import com.igot.cb.pores.cache.TieredCacheService;
+import com.igot.cb.pores.cache.SearchCacheKeyGenerator;
 import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
+import com.igot.cb.pores.elasticsearch.service.EsIndexingPipeline;
 import com.igot.cb.pores.elasticsearch.service.EsUtilService;
+import com.igot.cb.pores.exceptions.CustomException;
 import com.igot.cb.pores.util.*;
-import com.igot.cb.transactional.cassandrautils.CassandraOperation;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -37,11 +48,15 @@ import java.time.LocalDate;
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @Slf4j
@@ -53,21 +68,35 @@ public class DiscussionServiceImpl implements DiscussionService {
     @Autowired
     private DiscussionRepository discussionRepository;
     @Autowired
-    private CacheService cacheService;
+    private TieredCacheService tieredCacheService;
     @Autowired
     private EsUtilService esUtilService;
     @Autowired
+    private EsIndexingPipeline esIndexingPipeline;
+    @Autowired
     private CbServerProperties cbServerProperties;
     @Autowired
-    private RedisTemplate<String, SearchResult> redisTemplate;
+    private RedisTemplate<String, byte[]> redisTemplate;
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
-    private CassandraOperation cassandraOperation;
-    @Autowired
     private AccessTokenValidator accessTokenValidator;
     @Autowired
-    private RedisTemplate<String, Object> redisTemp;
+    private AuthorProfileResolver authorProfileResolver;
+    @Autowired
+    private MetricRegistry metricRegistry;
+    @Autowired
+    private VoteCounterAggregator voteCounterAggregator;
+    @Autowired
+    private VoteStore voteStore;
+    @Autowired
+    private SearchCacheKeyGenerator searchCacheKeyGenerator;
+    @Autowired
+    private CacheCodec cacheCodec;
+    @Autowired
+    private SearchCacheInvalidator searchCacheInvalidator;
+    @Autowired
+    private CacheStampedeGuard cacheStampedeGuard;
 
     @PostConstruct
     public void init() {
@@ -115,8 +144,9 @@ public class DiscussionServiceImpl implements DiscussionService {
             ObjectNode jsonNode = objectMapper.createObjectNode();
             jsonNode.setAll((ObjectNode) saveJsonEntity.getData());
             Map<String, Object> map = objectMapper.convertValue(jsonNode, Map.class);
-            esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, String.valueOf(id), map, cbServerProperties.getElasticDiscussionJsonPath());
-            cacheService.putCache("discussion_" + String.valueOf(id), jsonNode);
+            CompletableFuture<Void> indexed = esIndexingPipeline.index(cbServerProperties.getDiscussionEntity(), String.valueOf(id), map, cbServerProperties.getElasticDiscussionJsonPath());
+            searchCacheInvalidator.evictMatching(map, indexed);
+            tieredCacheService.putCache("discussion_" + String.valueOf(id), jsonNode);
             map.put(Constants.CREATED_ON,currentTime);
             response.setResponseCode(HttpStatus.CREATED);
             response.getParams().setStatus(Constants.SUCCESS);
@@ -145,18 +175,23 @@ public class DiscussionServiceImpl implements DiscussionService {
             return response;
         }
         try {
-            String cachedJson = cacheService.getCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId);
-            if (StringUtils.isNotEmpty(cachedJson)) {
+            Map<String, Object> cachedDiscussion = tieredCacheService.getCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId,
+                    new TypeReference<Map<String, Object>>() {
+                    });
+            if (MapUtils.isNotEmpty(cachedDiscussion)) {
                 log.info("discussion Record coming from redis cache");
                 response.setMessage(Constants.SUCCESS);
                 response.setResponseCode(HttpStatus.OK);
-                response.setResult((Map<String, Object>) objectMapper.readValue(cachedJson, new TypeReference<Object>() {
-                }));
+                response.setResult(cachedDiscussion);
             } else {
-                Optional<DiscussionEntity> entityOptional = discussionRepository.findById(discussionId);
+                // Concurrent misses for the same discussion share one database read.
+                Optional<DiscussionEntity> entityOptional = cacheStampedeGuard.load(Constants.DISCUSSION_CACHE_PREFIX + discussionId, () -> {
+                    Optional<DiscussionEntity> entity = discussionRepository.findById(discussionId);
+                    entity.ifPresent(loaded -> tieredCacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId, loaded.getData()));
+                    return entity;
+                });
                 if (entityOptional.isPresent()) {
                     DiscussionEntity discussionEntity = entityOptional.get();
-                    cacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId, discussionEntity.getData());
                     log.info("discussion Record coming from postgres db");
                     response.setMessage(Constants.SUCCESS);
                     response.setResponseCode(HttpStatus.OK);
@@ -202,23 +237,28 @@ public class DiscussionServiceImpl implements DiscussionService {
                 return response;
             }
             JsonNode data = discussionDbData.getData();
+            ObjectNode changedFields = objectMapper.createObjectNode();
             List<String> updateFields = Arrays.asList(Constants.TYPE, Constants.TITLE, Constants.DESCRIPTION_PAYLOAD, Constants.TARGET_TOPIC, Constants.TAGS);
             for (String field : updateFields) {
                 if (updateData.has(field)) {
-                    ((ObjectNode) data).put(field, updateData.get(field).asText());
+                    changedFields.put(field, updateData.get(field).asText());
                 }
             }
             Timestamp currentTime = new Timestamp(System.currentTimeMillis());
-            ((ObjectNode) data).put(Constants.UPDATED_ON,String.valueOf(currentTime));
+            changedFields.put(Constants.UPDATED_ON, String.valueOf(currentTime));
+            Map<String, Object> previousData = objectMapper.convertValue(data, new TypeReference<Map<String, Object>>() {
+            });
+            ((ObjectNode) data).setAll(changedFields);
             discussionDbData.setUpdatedOn(currentTime);
             discussionDbData.setData(data);
             discussionRepository.save(discussionDbData);
-            ObjectNode jsonNode = objectMapper.createObjectNode();
-            jsonNode.set(Constants.DISCUSSION_ID, new TextNode(discussionDbData.getDiscussionId()));
-            jsonNode.setAll((ObjectNode) data);
 
-            Map<String, Object> map = objectMapper.convertValue(jsonNode, Map.class);
-            esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, discussionDbData.getDiscussionId(), map, cbServerProperties.getElasticDiscussionJsonPath());
+            Map<String, Object> map = objectMapper.convertValue(changedFields, Map.class);
+            CompletableFuture<Void> updated = esIndexingPipeline.update(cbServerProperties.getDiscussionEntity(), discussionDbData.getDiscussionId(), map, cbServerProperties.getElasticDiscussionJsonPath());
+            Map<String, Object> updatedData = new HashMap<>(previousData);
+            updatedData.putAll(map);
+            searchCacheInvalidator.evictUpdated(discussionDbData.getDiscussionId(), previousData, updatedData, updated);
+            tieredCacheService.deleteCache(Constants.DISCUSSION_CACHE_PREFIX + discussionDbData.getDiscussionId());
             Map<String, Object> responseMap = objectMapper.convertValue(discussionDbData, new TypeReference<Map<String, Object>>() {
             });
             response.setResponseCode(HttpStatus.OK);
@@ -237,10 +277,11 @@ public class DiscussionServiceImpl implements DiscussionService {
     public ApiResponse searchDiscussion(SearchCriteria searchCriteria) {
         log.info("DiscussionServiceImpl::searchDiscussion");
         ApiResponse response = ProjectUtil.createDefaultResponse("search.discussion");
-        SearchResult searchResult =  redisTemplate.opsForValue().get(generateRedisJwtTokenKey(searchCriteria));
-        if (searchResult != null) {
+        String cacheKey = searchCacheKeyGenerator.generateKey(searchCriteria);
+        RawJson cachedSearchResult = readCachedSearchResult(cacheKey, true);
+        if (cachedSearchResult != null) {
             log.info("DiscussionServiceImpl::searchDiscussion:  search result fetched from redis");
-            response.getResult().put(Constants.SEARCH_RESULTS, searchResult);
+            response.getResult().put(Constants.SEARCH_RESULTS, cachedSearchResult);
             createSuccessResponse(response);
             return response;
         }
@@ -250,65 +291,111 @@ public class DiscussionServiceImpl implements DiscussionService {
             return response;
         }
         try {
-            searchResult = esUtilService.searchDocuments(cbServerProperties.getDiscussionEntity(), searchCriteria);
-            List<Map<String, Object>> discussions = objectMapper.convertValue(
-                    searchResult.getData(),
-                    new TypeReference<List<Map<String, Object>>>() {
-                    }
-            );
-
-            Map<String, String> discussionToCreatedByMap = discussions.stream()
-                    .collect(Collectors.toMap(
-                            discussion -> discussion.get(Constants.DISCUSSION_ID).toString(),
-                            discussion -> discussion.get(Constants.CREATED_BY).toString()));
-
-            Set<String> createdByIds = new HashSet<>(discussionToCreatedByMap.values());
-
-            List<Object> redisResults = fetchDataForKeys(
-                    createdByIds.stream().map(id -> Constants.USER_PREFIX + id).collect(Collectors.toList())
-            );
-            Map<String, Object> userDetailsMap = redisResults.stream()
-                    .map(user -> (Map<String, Object>) user)
-                    .collect(Collectors.toMap(
-                            user -> user.get(Constants.USER_ID_KEY).toString(),
-                            user -> user));
-
-            List<String> missingUserIds = createdByIds.stream()
-                    .filter(id -> !userDetailsMap.containsKey(id))
-                    .collect(Collectors.toList());
-
-            if (!missingUserIds.isEmpty()) {
-                List<Object> cassandraResults = fetchUserFromPrimary(missingUserIds);
-                userDetailsMap.putAll(cassandraResults.stream()
-                        .map(user -> (Map<String, Object>) user)
-                        .collect(Collectors.toMap(
-                                user -> user.get(Constants.USER_ID_KEY).toString(),
-                                user -> user)));
-            }
-
-            List<Map<String, Object>> filteredDiscussions = new ArrayList<>();
-            for (Map<String, Object> discussion : discussions) {
-                String discussionId = discussion.get(Constants.DISCUSSION_ID).toString();
-                String createdById = discussionToCreatedByMap.get(discussionId);
-                if (createdById != null && userDetailsMap.containsKey(createdById)) {
-                    discussion.put(Constants.CREATED_BY, userDetailsMap.get(createdById));
-                    filteredDiscussions.add(discussion);
-                }
-            }
-
-            JsonNode enhancedData = objectMapper.valueToTree(filteredDiscussions);
-            searchResult.setData(enhancedData);
-            redisTemplate.opsForValue().set(generateRedisJwtTokenKey(searchCriteria), searchResult, cbServerProperties.getSearchResultRedisTtl(), TimeUnit.SECONDS);
+            RawJson searchResult = cacheStampedeGuard.loadExclusive(cacheKey,
+                    () -> searchAndCache(searchCriteria, cacheKey), () -> readCachedSearchResult(cacheKey, false));
             response.getResult().put(Constants.SEARCH_RESULTS, searchResult);
             createSuccessResponse(response);
             return response;
+        } catch (CustomException e) {
+            log.error("DiscussionServiceImpl::searchDiscussion: invalid search request: {}", e.getMessage());
+            createErrorResponse(response, e.getMessage(), e.getHttpStatusCode(), Constants.FAILED_CONST);
+            return response;
         } catch (Exception e) {
+            log.error("DiscussionServiceImpl::searchDiscussion: search failed", e);
             createErrorResponse(response, e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR, Constants.FAILED_CONST);
-            redisTemplate.opsForValue().set(generateRedisJwtTokenKey(searchCriteria), searchResult, cbServerProperties.getSearchResultRedisTtl(), TimeUnit.SECONDS);
             return response;
         }
     }
 
+    /**
+     * Returns the cached search result, or null on a miss. With {@code earlyRefresh} a hit
+     * close to expiry may also be reported as a miss, so that it is reloaded ahead of time.
+     */
+    private RawJson readCachedSearchResult(String cacheKey, boolean earlyRefresh) {
+        List<Object> cached = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] key = cacheKey.getBytes(StandardCharsets.UTF_8);
+            connection.get(key);
+            connection.pTtl(key);
+            return null;
+        });
+        byte[] cachedResult = (byte[]) cached.get(0);
+        if (cachedResult == null) {
+            return null;
+        }
+        if (earlyRefresh) {
+            double reloadTimeMs = searchStageTimer("total").getSnapshot().getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+            if (cacheStampedeGuard.shouldRefreshEarly((Long) cached.get(1), reloadTimeMs)) {
+                return null;
+            }
+        }
+        return cacheCodec.toRawJson(cachedResult);
+    }
+
+    private RawJson searchAndCache(SearchCriteria searchCriteria, String cacheKey) throws Exception {
+        long startTime = System.nanoTime();
+        SearchResult searchResult = esUtilService.searchDocuments(cbServerProperties.getDiscussionEntity(), searchCriteria);
+        long searchTime = System.nanoTime();
+        List<Map<String, Object>> discussions = searchResult.getData();
+
+        Set<String> createdByIds = new HashSet<>();
+        for (Map<String, Object> discussion : discussions) {
+            Object createdBy = discussion.get(Constants.CREATED_BY);
+            if (createdBy != null) {
+                createdByIds.add(createdBy.toString());
+            }
+        }
+        long remainingBudget = cbServerProperties.getSearchEnrichmentBudgetMs() - TimeUnit.NANOSECONDS.toMillis(searchTime - startTime);
+        Map<String, AuthorSummary> authors;
+        boolean degraded = false;
+        try {
+            authors = authorProfileResolver.resolveAsync(createdByIds).get(Math.max(remainingBudget, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            log.warn("DiscussionServiceImpl::searchDiscussion: author enrichment degraded: {}", e.toString());
+            authors = authorProfileResolver.resolveCached(createdByIds);
+            degraded = true;
+        }
+        long enrichmentTime = System.nanoTime();
+
+        List<Map<String, Object>> filteredDiscussions = new ArrayList<>();
+        for (Map<String, Object> discussion : discussions) {
+            Object createdBy = discussion.get(Constants.CREATED_BY);
+            AuthorSummary author = createdBy == null ? null : authors.get(createdBy.toString());
+            if (author != null) {
+                discussion.put(Constants.CREATED_BY, author);
+                filteredDiscussions.add(discussion);
+            } else if (degraded) {
+                // Keep the bare createdBy id; the author may just not have loaded in time.
+                filteredDiscussions.add(discussion);
+            }
+        }
+
+        searchResult.setData(filteredDiscussions);
+        // Serialized once: the same bytes are cached and copied into the response.
+        byte[] serializedResult = cacheCodec.serialize(searchResult);
+        if (degraded) {
+            metricRegistry.meter(MetricRegistry.name(DiscussionServiceImpl.class, "search", "degraded")).mark();
+        } else {
+            redisTemplate.opsForValue().set(cacheKey, cacheCodec.frame(serializedResult), cbServerProperties.getSearchResultRedisTtl(), TimeUnit.SECONDS);
+            searchCacheInvalidator.register(cacheKey, searchCriteria, filteredDiscussions, cbServerProperties.getSearchResultRedisTtl());
+        }
+        long endTime = System.nanoTime();
+        recordSearchStage("es", searchTime - startTime);
+        recordSearchStage("enrichment", enrichmentTime - searchTime);
+        recordSearchStage("total", endTime - startTime);
+        log.info("DiscussionServiceImpl::searchDiscussion: es={}ms enrichment={}ms total={}ms hits={} authors={} degraded={}",
+                TimeUnit.NANOSECONDS.toMillis(searchTime - startTime), TimeUnit.NANOSECONDS.toMillis(enrichmentTime - searchTime),
+                TimeUnit.NANOSECONDS.toMillis(endTime - startTime), discussions.size(), createdByIds.size(), degraded);
+        return cacheCodec.toRawJsonPayload(serializedResult);
+    }
+
+    private void recordSearchStage(String stage, long elapsedNanos) {
+        searchStageTimer(stage).update(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer searchStageTimer(String stage) {
+        return metricRegistry.timer(MetricRegistry.name(DiscussionServiceImpl.class, "search", stage));
+    }
+
     /**
      * Deletes the discussion with the given id.
      *
@@ -342,10 +429,12 @@ public class DiscussionServiceImpl implements DiscussionService {
                         jasonEntity.setDiscussionId(discussionId);
                         jasonEntity.setUpdatedOn(currentTime);
                         discussionRepository.save(jasonEntity);
-                        Map<String, Object> map = objectMapper.convertValue(data, Map.class);
+                        Map<String, Object> map = new HashMap<>();
                         map.put(Constants.IS_ACTIVE, false);
-                        esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, discussionId, map, cbServerProperties.getElasticDiscussionJsonPath());
-                        cacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId, data);
+                        map.put(Constants.UPDATED_ON, String.valueOf(currentTime));
+                        CompletableFuture<Void> updated = esIndexingPipeline.update(cbServerProperties.getDiscussionEntity(), discussionId, map, cbServerProperties.getElasticDiscussionJsonPath());
+                        searchCacheInvalidator.evictContaining(discussionId, updated);
+                        tieredCacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId, data);
                         log.info("Discussion details deleted successfully");
                         response.setResponseCode(HttpStatus.OK);
                         response.setMessage(Constants.DELETED_SUCCESSFULLY);
@@ -379,81 +468,42 @@ public class DiscussionServiceImpl implements DiscussionService {
                 return response;
             }
 
-            Optional<DiscussionEntity> discussionEntity = Optional.of(discussionRepository.findById(discussionId).orElse(null));
-            if (!discussionEntity.isPresent()) {
+            Boolean isActive = discussionRepository.findIsActiveByDiscussionId(discussionId);
+            if (isActive == null) {
                 createErrorResponse(response, Constants.DISCUSSION_NOT_FOUND, HttpStatus.BAD_REQUEST, Constants.FAILED);
                 return response;
             }
-
-            DiscussionEntity discussionDbData = discussionEntity.get();
-            HashMap<String, Object> discussionData = objectMapper.convertValue(discussionDbData.getData(), HashMap.class);
-            if (!discussionDbData.getIsActive()) {
+            if (!isActive) {
                 createErrorResponse(response, Constants.DISCUSSION_IS_INACTIVE, HttpStatus.BAD_REQUEST, Constants.FAILED);
                 return response;
             }
 
-            Object upVoteCountObj = discussionData.get(Constants.UP_VOTE_COUNT);
-            Object downVoteCountObj = discussionData.get(Constants.DOWN_VOTE_COUNT);
-            long existingUpVoteCount = (upVoteCountObj instanceof Number) ? ((Number) upVoteCountObj).longValue() : 0L;
-            long existingDownVoteCount = (downVoteCountObj instanceof Number) ? ((Number) downVoteCountObj).longValue() : 0L;
-
-            Map<String, Object> properties = new HashMap<>();
-            properties.put(Constants.DISCUSSION_ID_KEY, discussionId);
-            properties.put(Constants.USERID, userId);
-            List<Map<String, Object>> existingResponseList = cassandraOperation.getRecordsByPropertiesWithoutFiltering(Constants.KEYSPACE_SUNBIRD, Constants.USER_DISCUSSION_VOTES, properties, null, null);
-
-            if (existingResponseList.isEmpty()) {
-                Map<String, Object> propertyMap = new HashMap<>();
-                propertyMap.put(Constants.USER_ID_RQST, userId);
-                propertyMap.put(Constants.DISCUSSION_ID_KEY, discussionId);
-                propertyMap.put(Constants.VOTE_TYPE, voteType);
-
-                ApiResponse result = (ApiResponse) cassandraOperation.insertRecord(Constants.KEYSPACE_SUNBIRD, Constants.USER_DISCUSSION_VOTES, propertyMap);
-                Map<String, Object> resultMap = result.getResult();
-                if (!resultMap.get(Constants.RESPONSE).equals(Constants.SUCCESS)) {
-                    response.setResponseCode(HttpStatus.INTERNAL_SERVER_ERROR);
-                    return response;
-                }
+            String previousVoteType;
+            try {
+                previousVoteType = voteStore.castVote(discussionId, userId, voteType).join();
+            } catch (CompletionException e) {
+                log.error("Failed to store vote of {} on {}: {}", userId, discussionId, e.getMessage(), e);
+                createErrorResponse(response, Constants.FAILED_TO_VOTE, HttpStatus.INTERNAL_SERVER_ERROR, Constants.FAILED);
+                return response;
+            }
+            if (voteType.equals(previousVoteType)) {
+                createErrorResponse(response, String.format(Constants.USER_ALREADY_VOTED, voteType), HttpStatus.ALREADY_REPORTED, Constants.FAILED);
+                return response;
+            }
+
+            if (previousVoteType == null) {
                 if (voteType.equals(Constants.UP)) {
-                    discussionData.put(Constants.UP_VOTE_COUNT, existingUpVoteCount + 1);
+                    voteCounterAggregator.record(discussionId, 1, 0);
                 } else {
-                    discussionData.put(Constants.DOWN_VOTE_COUNT, existingDownVoteCount + 1);
+                    voteCounterAggregator.record(discussionId, 0, 1);
                 }
             } else {
-                Map<String, Object> userVoteData = existingResponseList.get(0);
-                if (userVoteData.get(Constants.VOTE_TYPE).equals(voteType)) {
-                    createErrorResponse(response, String.format(Constants.USER_ALREADY_VOTED, voteType), HttpStatus.ALREADY_REPORTED, Constants.FAILED);
-                    return response;
-                }
-
-                Map<String, Object> updateAttribute = new HashMap<>();
-                updateAttribute.put(Constants.VOTE_TYPE, voteType);
-                Map<String, Object> compositeKeys = new HashMap<>();
-                compositeKeys.put(Constants.USER_ID_RQST, userId);
-                compositeKeys.put(Constants.DISCUSSION_ID_KEY, discussionId);
-
-                Map<String, Object> result = cassandraOperation.updateRecordByCompositeKey(Constants.KEYSPACE_SUNBIRD, Constants.USER_DISCUSSION_VOTES, updateAttribute, compositeKeys);
-                if (!result.get(Constants.RESPONSE).equals(Constants.SUCCESS)) {
-                    createErrorResponse(response, Constants.FAILED_TO_VOTE, HttpStatus.INTERNAL_SERVER_ERROR, Constants.FAILED);
-                    return response;
-                }
-
                 if (voteType.equals(Constants.UP)) {
-                    discussionData.put(Constants.UP_VOTE_COUNT, existingUpVoteCount + 1);
-                    discussionData.put(Constants.DOWN_VOTE_COUNT, existingDownVoteCount - 1);
+                    voteCounterAggregator.record(discussionId, 1, -1);
                 } else {
-                    discussionData.put(Constants.UP_VOTE_COUNT, existingUpVoteCount - 1);
-                    discussionData.put(Constants.DOWN_VOTE_COUNT, existingDownVoteCount + 1);
+                    voteCounterAggregator.record(discussionId, -1, 1);
                 }
             }
-
-            Timestamp currentTime = new Timestamp(System.currentTimeMillis());
-            discussionDbData.setUpdatedOn(currentTime);
-            JsonNode jsonNode = objectMapper.valueToTree(discussionData);
-            discussionDbData.setData(jsonNode);
-            discussionRepository.save(discussionDbData);
-            esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, discussionDbData.getDiscussionId(), discussionData, cbServerProperties.getElasticDiscussionJsonPath());
-            cacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionDbData.getDiscussionId(), discussionData);
             response.setResponseCode(HttpStatus.OK);
             response.getParams().setStatus(Constants.SUCCESS);
         } catch (Exception e) {
@@ -463,18 +513,6 @@ public class DiscussionServiceImpl implements DiscussionService {
         return response;
     }
 
-    public String generateRedisJwtTokenKey(Object requestPayload) {
-        if (requestPayload != null) {
-            try {
-                String reqJsonString = objectMapper.writeValueAsString(requestPayload);
-                return JWT.create().withClaim(Constants.REQUEST_PAYLOAD, reqJsonString).sign(Algorithm.HMAC256(Constants.JWT_SECRET_KEY));
-            } catch (JsonProcessingException e) {
-                log.error("Error occurred while converting json object to json string", e);
-            }
-        }
-        return "";
-    }
-
     public void createSuccessResponse(ApiResponse response) {
         response.setParams(new ApiRespParam());
         response.getParams().setStatus(Constants.SUCCESS);
@@ -507,81 +545,6 @@ public class DiscussionServiceImpl implements DiscussionService {
         return str.toString();
     }
 
-    public List<Object> fetchDataForKeys(List<String> keys) {
-        // Fetch values for all keys from Redis
-        List<Object> values = redisTemp.opsForValue().multiGet(keys);
-
-        // Create a map of key-value pairs, converting stringified JSON objects to User objects
-        return keys.stream()
-                .filter(key -> values.get(keys.indexOf(key)) != null) // Filter out null values
-                .map(key -> {
-                    String stringifiedJson = (String) values.get(keys.indexOf(key)); // Cast the value to String
-                    try {
-                        // Convert the stringified JSON to a User object using ObjectMapper
-                        return objectMapper.readValue(stringifiedJson, Object.class); // You can map this to a specific User type if needed
-                    } catch (Exception e) {
-                        // Handle any exceptions during deserialization
-                        e.printStackTrace();
-                        return null; // Return null in case of error
-                    }
-                })
-                .collect(Collectors.toList());
-    }
-
-    public List<Object> fetchUserFromPrimary(List<String> userIds) {
-        List<Object> userList = new ArrayList<>();
-        Map<String, Object> propertyMap = new HashMap<>();
-        propertyMap.put(Constants.ID, userIds);
-        List<Map<String, Object>> userInfoList = cassandraOperation.getRecordsByPropertiesWithoutFiltering(
-                Constants.KEYSPACE_SUNBIRD, Constants.USER_TABLE, propertyMap,
-                Arrays.asList(Constants.PROFILE_DETAILS, Constants.FIRST_NAME, Constants.ID), null);
-
-        userList = userInfoList.stream()
-                .map(userInfo -> {
-                    Map<String, Object> userMap = new HashMap<>();
-
-                    // Extract user ID and user name
-                    String userId = (String) userInfo.get(Constants.ID);
-                    String userName = (String) userInfo.get(Constants.FIRST_NAME);
-
-                    userMap.put(Constants.USER_ID_KEY, userId);
-                    userMap.put(Constants.FIRST_NAME_KEY, userName);
-
-                    // Process profile details if present
-                    String profileDetails = (String) userInfo.get(Constants.PROFILE_DETAILS);
-                    if (StringUtils.isNotBlank(profileDetails)) {
-                        try {
-                            // Convert JSON profile details to a Map
-                            Map<String, Object> profileDetailsMap = objectMapper.readValue(profileDetails,
-                                    new TypeReference<HashMap<String, Object>>() {});
-
-                            // Check for profile image and add to userMap if available
-                            if (MapUtils.isNotEmpty(profileDetailsMap)) {
-                                if (profileDetailsMap.containsKey(Constants.PROFILE_IMG) && StringUtils.isNotBlank((String) profileDetailsMap.get(Constants.PROFILE_IMG))){
-                                    userMap.put(Constants.PROFILE_IMG_KEY, (String) profileDetailsMap.get(Constants.PROFILE_IMG));
-                                }
-                                if (profileDetailsMap.containsKey(Constants.DESIGNATION_KEY) && StringUtils.isNotEmpty((String) profileDetailsMap.get(Constants.DESIGNATION_KEY))) {
-
-                                    userMap.put(Constants.DESIGNATION_KEY, (String) profileDetailsMap.get(Constants.PROFILE_IMG));
-                                }
-                                if(profileDetailsMap.containsKey(Constants.EMPLOYMENT_DETAILS) && MapUtils.isNotEmpty(
-                                        (Map<?, ?>) profileDetailsMap.get(Constants.EMPLOYMENT_DETAILS)) && ((Map<?, ?>) profileDetailsMap.get(Constants.EMPLOYMENT_DETAILS)).containsKey(Constants.DEPARTMENT_KEY) && StringUtils.isNotBlank(
-                                        (String) ((Map<?, ?>) profileDetailsMap.get(Constants.EMPLOYMENT_DETAILS)).get(Constants.DEPARTMENT_KEY))){
-                                    userMap.put(Constants.DEPARTMENT, (String) ((Map<?, ?>) profileDetailsMap.get(Constants.EMPLOYMENT_DETAILS)).get(Constants.DEPARTMENT_KEY));
-
-                                }
-                            }
-                        } catch (JsonProcessingException e) {
-                            log.error("Error occurred while converting json object to json string", e);
-                        }
-                    }
-
-                    return userMap;
-                })
-                .collect(Collectors.toList());
-        return userList;
-    }
-
     @Override
     public ApiResponse createAnswerPost(JsonNode answerPostData, String token) {
         log.info("DiscussionService::createAnswerPost:creating answerPost");
@@ -612,15 +575,19 @@ public class DiscussionServiceImpl implements DiscussionService {
             ((ObjectNode) answerPostData).put(Constants.CREATED_ON, currentTime.toString());
             jsonNodeEntity.setIsActive(true);
             ((ObjectNode) answerPostData).put(Constants.IS_ACTIVE, true);
+            String parentDiscussionId = answerPostData.get(Constants.PARENT_DISCUSSION_ID).asText();
+            jsonNodeEntity.setParentDiscussionId(parentDiscussionId);
             jsonNodeEntity.setData(answerPostData);
             DiscussionEntity saveJsonEntity = discussionRepository.save(jsonNodeEntity);
             ObjectMapper objectMapper = new ObjectMapper();
             ObjectNode jsonNode = objectMapper.createObjectNode();
             jsonNode.setAll((ObjectNode) saveJsonEntity.getData());
             Map<String, Object> map = objectMapper.convertValue(jsonNode, Map.class);
-            esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, String.valueOf(id), map, cbServerProperties.getElasticDiscussionJsonPath());
-            cacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + String.valueOf(id), jsonNode);
-            updateAnswerPostToDiscussion(answerPostData.get(Constants.PARENT_DISCUSSION_ID).asText(), String.valueOf(id));
+            CompletableFuture<Void> indexed = esIndexingPipeline.index(cbServerProperties.getDiscussionEntity(), String.valueOf(id), map, cbServerProperties.getElasticDiscussionJsonPath());
+            searchCacheInvalidator.evictMatching(map, indexed);
+            incrementAnswerPostCount(parentDiscussionId);
+            tieredCacheService.writeCache(Collections.singletonMap(Constants.DISCUSSION_CACHE_PREFIX + String.valueOf(id), jsonNode),
+                    Collections.singleton(Constants.DISCUSSION_CACHE_PREFIX + parentDiscussionId));
             log.info("AnswerPost created successfully");
             map.put(Constants.CREATED_ON, currentTime);
             response.setResponseCode(HttpStatus.CREATED);
@@ -647,31 +614,40 @@ public class DiscussionServiceImpl implements DiscussionService {
         return true;
     }
 
-    private void updateAnswerPostToDiscussion(String parentDiscussionId, String discussionId) {
-        DiscussionEntity discussionEntity = discussionRepository.findById(parentDiscussionId).get();
-        JsonNode data = discussionEntity.getData();
-        if (data.has(Constants.ANSWER_POSTS)) {
-            Set<String> answerPostSet = new HashSet<>();
-            ArrayNode existingAnswerPosts = (ArrayNode) data.get(Constants.ANSWER_POSTS);
-            existingAnswerPosts.forEach(post -> answerPostSet.add(post.asText()));
-            answerPostSet.add(discussionId);
-            ArrayNode arrayNode = objectMapper.valueToTree(answerPostSet);
-            ((ObjectNode) data).put(Constants.ANSWER_POSTS, arrayNode);
-            ((ObjectNode) data).put(Constants.ANSWER_POST_COUNT, answerPostSet.size());
-        } else {
-            ArrayNode arrayNode = objectMapper.createArrayNode();
-            arrayNode.add(discussionId);
-            ((ObjectNode) data).put(Constants.ANSWER_POSTS, arrayNode);
-            ((ObjectNode) data).put(Constants.ANSWER_POST_COUNT, 1);
-        }
-        discussionEntity.setData(data);
-        DiscussionEntity saveJsonEntity = discussionRepository.save(discussionEntity);
-        log.info("DiscussionService::updateAnswerPostToDiscussion: Discussion entity updated successfully");
-        ObjectNode jsonNode = objectMapper.createObjectNode();
-        jsonNode.setAll((ObjectNode) saveJsonEntity.getData());
-        Map<String, Object> map = objectMapper.convertValue(jsonNode, Map.class);
-        esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, parentDiscussionId, map, cbServerProperties.getElasticDiscussionJsonPath());
-        cacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + parentDiscussionId, jsonNode);
+    /**
+     * Counts a new answer post on its parent. The answer posts themselves are listed through
+     * their parent id column, so the parent document is not rewritten. The caller evicts the
+     * cached parent together with caching the answer post.
+     */
+    private void incrementAnswerPostCount(String parentDiscussionId) {
+        discussionRepository.incrementAnswerPostCount(parentDiscussionId, 1L, new Timestamp(System.currentTimeMillis()));
+        log.info("DiscussionService::incrementAnswerPostCount: answer post count updated for {}", parentDiscussionId);
+        CompletableFuture<Void> updated = esIndexingPipeline.incrementCounters(cbServerProperties.getDiscussionEntity(), parentDiscussionId,
+                Collections.singletonMap(Constants.ANSWER_POST_COUNT, 1L));
+        searchCacheInvalidator.evictContaining(parentDiscussionId, updated);
+    }
+
+    @Override
+    public ApiResponse getAnswerPosts(String discussionId, int pageNumber, int pageSize) {
+        log.info("DiscussionService::getAnswerPosts: fetching answer posts of {}", discussionId);
+        ApiResponse response = ProjectUtil.createDefaultResponse("discussion.answerPosts");
+        int maxPageSize = cbServerProperties.getAnswerPostMaxPageSize();
+        if (pageNumber < 0 || pageSize < 1 || pageSize > maxPageSize) {
+            return returnErrorMsg(Constants.INVALID_PAGE_SIZE + maxPageSize, HttpStatus.BAD_REQUEST, response, Constants.FAILED);
+        }
+        try {
+            Page<DiscussionEntity> answerPosts = discussionRepository.findByParentDiscussionIdAndIsActiveTrue(discussionId,
+                    PageRequest.of(pageNumber, pageSize, Sort.by(Sort.Direction.DESC, Constants.CREATED_ON)));
+            List<JsonNode> data = new ArrayList<>(answerPosts.getNumberOfElements());
+            answerPosts.forEach(answerPost -> data.add(answerPost.getData()));
+            response.getResult().put(Constants.ANSWER_POSTS, data);
+            response.getResult().put(Constants.TOTAL_COUNT, answerPosts.getTotalElements());
+            createSuccessResponse(response);
+            return response;
+        } catch (Exception e) {
+            log.error("DiscussionService::getAnswerPosts: failed to fetch answer posts of {}", discussionId, e);
+            return returnErrorMsg(Constants.FAILED_TO_FETCH_ANSWER_POSTS, HttpStatus.INTERNAL_SERVER_ERROR, response, Constants.FAILED);
+        }
     }
 
     @Override
@@ -729,9 +705,12 @@ public class DiscussionServiceImpl implements DiscussionService {
 
             ObjectNode jsonNode = objectMapper.createObjectNode();
             jsonNode.setAll((ObjectNode) discussionEntity.getData());
-            Map<String, Object> map = objectMapper.convertValue(jsonNode, Map.class);
-            esUtilService.addDocument(cbServerProperties.getDiscussionEntity(), Constants.INDEX_TYPE, discussionId, map, cbServerProperties.getElasticDiscussionJsonPath());
-            cacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId, jsonNode);
+            Map<String, Object> map = new HashMap<>();
+            // Only the status is indexed; reporters and reasons stay in Postgres.
+            map.put(Constants.STATUS, Constants.SUSPENDED);
+            CompletableFuture<Void> updated = esIndexingPipeline.update(cbServerProperties.getDiscussionEntity(), discussionId, map, cbServerProperties.getElasticDiscussionJsonPath());
+            searchCacheInvalidator.evictContaining(discussionId, updated);
+            tieredCacheService.putCache(Constants.DISCUSSION_CACHE_PREFIX + discussionId, jsonNode);
             return response;
         } catch (Exception e) {
             log.error("DiscussionService::report: Failed to report discussion", e);
@@ -0,0 +1,177 @@
+package com.igot.cb.discussion.vote;
+
+import com.igot.cb.discussion.repository.DiscussionRepository;
+import com.igot.cb.pores.cache.SearchCacheInvalidator;
+import com.igot.cb.pores.cache.TieredCacheService;
+import com.igot.cb.pores.elasticsearch.service.EsIndexingPipeline;
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind aggregator for discussion vote counters.
+ * <p>
+ * Votes are absorbed into per-discussion {@link LongAdder}s on the request thread and
+ * flushed periodically: Postgres gets an atomic jsonb increment and the Elasticsearch
+ * indexing pipeline a scripted partial update, so concurrent clicks on a trending
+ * discussion never contend on its row.
+ * <p>
+ * Deltas not yet flushed live only in memory. A graceful shutdown flushes them, but a crash
+ * or kill loses up to one flush interval of count changes even though the votes themselves
+ * are already stored by {@link VoteStore}; nothing reconciles the Postgres and Elasticsearch
+ * counts with {@code user_discussion_votes} or the {@code discussion_vote_counts} table
+ * afterwards, so those counts stay off by the lost deltas.
+ */
+@Component
+@Slf4j
+public class VoteCounterAggregator {
+
+    /**
+     * Number of consecutive empty flushes after which a discussion's counters are retired.
+     */
+    private static final int MAX_IDLE_FLUSHES = 3;
+
+    private final ConcurrentHashMap<String, PendingVotes> pendingVotes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private DiscussionRepository discussionRepository;
+    @Autowired
+    private EsIndexingPipeline esIndexingPipeline;
+    @Autowired
+    private TieredCacheService tieredCacheService;
+    @Autowired
+    private SearchCacheInvalidator searchCacheInvalidator;
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    /**
+     * Records a vote change for the given discussion. Never blocks on the database.
+     *
+     * @param discussionId The discussion that was voted on.
+     * @param upDelta      Change to apply to the up vote count.
+     * @param downDelta    Change to apply to the down vote count.
+     */
+    public void record(String discussionId, long upDelta, long downDelta) {
+        while (true) {
+            PendingVotes votes = pendingVotes.get(discussionId);
+            if (votes == null) {
+                votes = pendingVotes.computeIfAbsent(discussionId, PendingVotes::new);
+            }
+            if (votes.add(upDelta, downDelta)) {
+                return;
+            }
+            // A retired instance is no longer flushed; make sure it is gone and retry on a new one.
+            pendingVotes.remove(discussionId, votes);
+        }
+    }
+
+    /**
+     * Pushes the accumulated deltas to Postgres, Elasticsearch and the cache. Deltas are
+     * acknowledged only after the database update succeeds, so a failed flush is retried
+     * on the next run instead of being lost.
+     */
+    @Scheduled(fixedDelayString = "${discussion.vote.flush.interval.ms}")
+    public synchronized void flush() {
+        for (PendingVotes votes : pendingVotes.values()) {
+            if (votes.hasPending()) {
+                drain(votes);
+            } else if (++votes.idleFlushes >= MAX_IDLE_FLUSHES && votes.retire()) {
+                pendingVotes.remove(votes.discussionId, votes);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("VoteCounterAggregator::shutdown: flushing pending votes");
+        flush();
+    }
+
+    private boolean drain(PendingVotes votes) {
+        long upVotes = votes.upVotes.sum();
+        long downVotes = votes.downVotes.sum();
+        long upDelta = upVotes - votes.flushedUpVotes;
+        long downDelta = downVotes - votes.flushedDownVotes;
+        if (upDelta == 0 && downDelta == 0) {
+            return true;
+        }
+        try {
+            int updated = discussionRepository.incrementVoteCounts(votes.discussionId, upDelta, downDelta,
+                    new Timestamp(System.currentTimeMillis()));
+            if (updated == 0) {
+                log.warn("VoteCounterAggregator::drain: discussion {} not found, dropping votes", votes.discussionId);
+            }
+        } catch (Exception e) {
+            log.error("VoteCounterAggregator::drain: failed to flush votes for {}: {}", votes.discussionId, e.getMessage(), e);
+            return false;
+        }
+        votes.flushedUpVotes = upVotes;
+        votes.flushedDownVotes = downVotes;
+        votes.idleFlushes = 0;
+
+        Map<String, Long> increments = new HashMap<>();
+        increments.put(Constants.UP_VOTE_COUNT, upDelta);
+        increments.put(Constants.DOWN_VOTE_COUNT, downDelta);
+        searchCacheInvalidator.evictContaining(votes.discussionId,
+                esIndexingPipeline.incrementCounters(cbServerProperties.getDiscussionEntity(), votes.discussionId, increments));
+        tieredCacheService.deleteCache(Constants.DISCUSSION_CACHE_PREFIX + votes.discussionId);
+        return true;
+    }
+
+    private static final class PendingVotes {
+        private final String discussionId;
+        private final LongAdder upVotes = new LongAdder();
+        private final LongAdder downVotes = new LongAdder();
+        // The fields below are only touched from flush(), which is synchronized.
+        private long flushedUpVotes;
+        private long flushedDownVotes;
+        private int idleFlushes;
+        // Guarded by this instance, so no vote can be added once it is retired.
+        private boolean retired;
+
+        private PendingVotes(String discussionId) {
+            this.discussionId = discussionId;
+        }
+
+        /**
+         * Adds the deltas, or returns false when this instance was retired and must be replaced.
+         */
+        private synchronized boolean add(long upDelta, long downDelta) {
+            if (retired) {
+                return false;
+            }
+            if (upDelta != 0) {
+                upVotes.add(upDelta);
+            }
+            if (downDelta != 0) {
+                downVotes.add(downDelta);
+            }
+            return true;
+        }
+
+        /**
+         * Retires this instance if every vote added so far has been flushed.
+         */
+        private synchronized boolean retire() {
+            if (hasPending()) {
+                return false;
+            }
+            retired = true;
+            return true;
+        }
+
+        private boolean hasPending() {
+            return upVotes.sum() != flushedUpVotes || downVotes.sum() != flushedDownVotes;
+        }
+    }
+}
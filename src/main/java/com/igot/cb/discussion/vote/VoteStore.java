@@ -0,0 +1,152 @@
+package com.igot.cb.discussion.vote;
+
+import com.igot.cb.pores.util.Constants;
+import com.igot.cb.transactional.cassandrautils.AsyncCassandraOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stores each user's vote on a discussion in {@code user_discussion_votes} with conditional
+ * writes, so concurrent votes by the same user cannot both count.
+ * <p>
+ * A vote is first inserted {@code IF NOT EXISTS}, which settles a first vote in one round
+ * trip and otherwise returns the vote already stored. A different stored vote is then
+ * switched {@code IF} it is still the one that was read; if another request changed it in
+ * between, the vote is retried against the value it left.
+ * <p>
+ * When enabled, per-discussion tallies are also kept in the {@code discussion_vote_counts}
+ * counter table.
+ */
+@Component
+@Slf4j
+public class VoteStore {
+
+    /**
+     * Number of conditional writes tried before giving up on a vote that keeps racing.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Autowired
+    private AsyncCassandraOperation asyncCassandraOperation;
+
+    @Value("${discussion.vote.counter.table.enabled}")
+    private boolean counterTableEnabled;
+
+    @Value("${discussion.vote.store.threads}")
+    private int storeThreads;
+
+    /**
+     * Runs the steps that follow a conditional write. They issue further statements, which may
+     * need preparing, and the driver refuses to prepare on the I/O thread completing the write.
+     */
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(storeThreads, runnable -> {
+            Thread thread = new Thread(runnable, "vote-store-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Records the user's vote on the discussion.
+     *
+     * @param discussionId The discussion voted on.
+     * @param userId       The voting user.
+     * @param voteType     {@link Constants#UP} or {@link Constants#DOWN}.
+     * @return A future of the user's previous vote, null if this is their first. The vote is
+     * unchanged when the previous one equals {@code voteType}.
+     */
+    public CompletableFuture<String> castVote(String discussionId, String userId, String voteType) {
+        return insertVote(discussionId, userId, voteType, 0).thenApplyAsync(previousVoteType -> {
+            if (counterTableEnabled && !voteType.equals(previousVoteType)) {
+                incrementCounters(discussionId, voteType, previousVoteType);
+            }
+            return previousVoteType;
+        }, executor);
+    }
+
+    private CompletableFuture<String> insertVote(String discussionId, String userId, String voteType, int attempts) {
+        if (attempts >= MAX_ATTEMPTS) {
+            return tooManyAttempts(discussionId, userId);
+        }
+        Map<String, Object> vote = voteKey(discussionId, userId);
+        vote.put(Constants.VOTE_TYPE, voteType);
+        return asyncCassandraOperation.insertRecordIfNotExistsAsync(Constants.KEYSPACE_SUNBIRD,
+                Constants.USER_DISCUSSION_VOTES, vote).thenComposeAsync(result -> {
+            if (Boolean.TRUE.equals(result.get(Constants.APPLIED))) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return switchVote(discussionId, userId, voteType, (String) result.get(Constants.VOTE_TYPE), attempts + 1);
+        }, executor);
+    }
+
+    private CompletableFuture<String> switchVote(String discussionId, String userId, String voteType,
+                                                 String previousVoteType, int attempts) {
+        if (voteType.equals(previousVoteType)) {
+            return CompletableFuture.completedFuture(previousVoteType);
+        }
+        if (attempts >= MAX_ATTEMPTS) {
+            return tooManyAttempts(discussionId, userId);
+        }
+        return asyncCassandraOperation.updateRecordByCompositeKeyIfAsync(Constants.KEYSPACE_SUNBIRD,
+                Constants.USER_DISCUSSION_VOTES, Collections.singletonMap(Constants.VOTE_TYPE, voteType),
+                voteKey(discussionId, userId), Collections.singletonMap(Constants.VOTE_TYPE, previousVoteType))
+                .thenComposeAsync(result -> {
+                    if (Boolean.TRUE.equals(result.get(Constants.APPLIED))) {
+                        return CompletableFuture.completedFuture(previousVoteType);
+                    }
+                    String currentVoteType = (String) result.get(Constants.VOTE_TYPE);
+                    return currentVoteType == null
+                            ? insertVote(discussionId, userId, voteType, attempts + 1)
+                            : switchVote(discussionId, userId, voteType, currentVoteType, attempts + 1);
+                }, executor);
+    }
+
+    private void incrementCounters(String discussionId, String voteType, String previousVoteType) {
+        Map<String, Long> deltas = new HashMap<>();
+        deltas.put(Constants.UP_VOTE_COUNT, (Constants.UP.equals(voteType) ? 1L : 0L) - (Constants.UP.equals(previousVoteType) ? 1L : 0L));
+        deltas.put(Constants.DOWN_VOTE_COUNT, (Constants.DOWN.equals(voteType) ? 1L : 0L) - (Constants.DOWN.equals(previousVoteType) ? 1L : 0L));
+        asyncCassandraOperation.incrementCountersAsync(Constants.KEYSPACE_SUNBIRD, Constants.DISCUSSION_VOTE_COUNTS,
+                deltas, Collections.singletonMap(Constants.DISCUSSION_ID_KEY, discussionId))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.error("VoteStore::incrementCounters: failed for {}: {}", discussionId, error.getMessage());
+                    }
+                });
+    }
+
+    private static CompletableFuture<String> tooManyAttempts(String discussionId, String userId) {
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException(
+                "Vote of " + userId + " on " + discussionId + " kept changing concurrently"));
+        return failed;
+    }
+
+    private static Map<String, Object> voteKey(String discussionId, String userId) {
+        Map<String, Object> key = new HashMap<>();
+        key.put(Constants.USER_ID_RQST, userId);
+        key.put(Constants.DISCUSSION_ID_KEY, discussionId);
+        return key;
+    }
+}
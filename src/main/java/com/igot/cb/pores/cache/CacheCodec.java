@@ -0,0 +1,212 @@
+package com.igot.cb.pores.cache;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.igot.cb.pores.util.RawJson;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Encodes values cached in Redis.
+ * <p>
+ * Values are written as Smile, CBOR or plain JSON depending on {@code cache.codec.format},
+ * and compressed with LZ4 once they exceed {@code cache.codec.compression.threshold.bytes}.
+ * Binary values start with a three byte header: the codec version, the format and the
+ * compression. A value that does not start with the version byte is read as plain JSON, so
+ * entries written before the codec existed, or by pods still writing JSON, stay readable.
+ * Setting the format to {@code json} writes plain JSON that older pods can read, for
+ * rolling out the codec.
+ */
+@Component
+@Slf4j
+public class CacheCodec {
+
+  private static final byte VERSION = 1;
+
+  private static final int HEADER_LENGTH = 3;
+  private static final byte FORMAT_JSON = 0;
+  private static final byte FORMAT_SMILE = 1;
+  private static final byte FORMAT_CBOR = 2;
+  private static final byte COMPRESSION_NONE = 0;
+  private static final byte COMPRESSION_LZ4 = 1;
+
+  private static final LZ4Compressor LZ4_COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+  private static final LZ4FastDecompressor LZ4_DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private Jackson2ObjectMapperBuilder objectMapperBuilder;
+  @Autowired
+  private MetricRegistry metricRegistry;
+
+  @Value("${cache.codec.format}")
+  private String format;
+
+  @Value("${cache.codec.compression.threshold.bytes}")
+  private int compressionThreshold;
+
+  private byte formatId;
+  private ObjectMapper[] mappers;
+  private Histogram storedBytes;
+  private Histogram rawBytes;
+  private Timer decodeTime;
+
+  @PostConstruct
+  public void init() {
+    mappers = new ObjectMapper[] {
+        objectMapper,
+        binaryMapper(new SmileFactory()),
+        binaryMapper(new CBORFactory())
+    };
+    switch (format.toLowerCase()) {
+      case "json":
+        formatId = FORMAT_JSON;
+        break;
+      case "smile":
+        formatId = FORMAT_SMILE;
+        break;
+      case "cbor":
+        formatId = FORMAT_CBOR;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported cache.codec.format: " + format);
+    }
+    storedBytes = metricRegistry.histogram(MetricRegistry.name(CacheCodec.class, "stored", "bytes"));
+    rawBytes = metricRegistry.histogram(MetricRegistry.name(CacheCodec.class, "raw", "bytes"));
+    decodeTime = metricRegistry.timer(MetricRegistry.name(CacheCodec.class, "decode"));
+  }
+
+  /**
+   * Creates a mapper for the given format with the same settings and modules as the JSON one.
+   */
+  private ObjectMapper binaryMapper(JsonFactory factory) {
+    ObjectMapper mapper = new ObjectMapper(factory);
+    objectMapperBuilder.configure(mapper);
+    return mapper;
+  }
+
+  /**
+   * Serializes the value in the configured format, without the header.
+   */
+  public byte[] serialize(Object value) throws IOException {
+    return mappers[formatId].writeValueAsBytes(value);
+  }
+
+  /**
+   * Frames a value returned by {@link #serialize} for storage, compressing it when it is
+   * over the threshold.
+   */
+  public byte[] frame(byte[] payload) {
+    rawBytes.update(payload.length);
+    if (formatId == FORMAT_JSON) {
+      storedBytes.update(payload.length);
+      return payload;
+    }
+    byte[] framed;
+    if (compressionThreshold > 0 && payload.length > compressionThreshold) {
+      byte[] compressed = new byte[HEADER_LENGTH + 4 + LZ4_COMPRESSOR.maxCompressedLength(payload.length)];
+      ByteBuffer.wrap(compressed, HEADER_LENGTH, 4).putInt(payload.length);
+      int length = LZ4_COMPRESSOR.compress(payload, 0, payload.length, compressed, HEADER_LENGTH + 4,
+          compressed.length - HEADER_LENGTH - 4);
+      framed = Arrays.copyOf(compressed, HEADER_LENGTH + 4 + length);
+      framed[2] = COMPRESSION_LZ4;
+    } else {
+      framed = new byte[HEADER_LENGTH + payload.length];
+      System.arraycopy(payload, 0, framed, HEADER_LENGTH, payload.length);
+      framed[2] = COMPRESSION_NONE;
+    }
+    framed[0] = VERSION;
+    framed[1] = formatId;
+    storedBytes.update(framed.length);
+    return framed;
+  }
+
+  public byte[] encode(Object value) throws IOException {
+    return frame(serialize(value));
+  }
+
+  /**
+   * Decodes a stored value, or returns null when it was written by a newer codec version.
+   */
+  public <T> T decode(byte[] data, TypeReference<T> type) throws IOException {
+    Timer.Context context = decodeTime.time();
+    try {
+      if (!isFramed(data)) {
+        return objectMapper.readValue(data, type);
+      }
+      ObjectMapper mapper = mapperFor(data);
+      return mapper == null ? null : mapper.readValue(payload(data), type);
+    } finally {
+      context.stop();
+    }
+  }
+
+  /**
+   * Returns a stored value that is copied into the response as is, or null when it was
+   * written by a newer codec version or its compressed payload is corrupt.
+   */
+  public RawJson toRawJson(byte[] data) {
+    Timer.Context context = decodeTime.time();
+    try {
+      if (!isFramed(data)) {
+        return new RawJson(data);
+      }
+      ObjectMapper mapper = mapperFor(data);
+      return mapper == null ? null : new RawJson(payload(data), mapper.getFactory());
+    } catch (LZ4Exception e) {
+      log.error("CacheCodec::toRawJson: corrupt compressed value: {}", e.getMessage());
+      return null;
+    } finally {
+      context.stop();
+    }
+  }
+
+  /**
+   * Wraps a value returned by {@link #serialize} so it is copied into the response as is.
+   */
+  public RawJson toRawJsonPayload(byte[] payload) {
+    return new RawJson(payload, mappers[formatId].getFactory());
+  }
+
+  private ObjectMapper mapperFor(byte[] data) {
+    if (data[0] != VERSION || data[1] < 0 || data[1] >= mappers.length) {
+      log.warn("CacheCodec::mapperFor: unsupported cache codec version {} or format {}", data[0], data[1]);
+      return null;
+    }
+    return mappers[data[1]];
+  }
+
+  private static boolean isFramed(byte[] data) {
+    // JSON text never starts with a control byte below 0x09.
+    return data.length >= HEADER_LENGTH && data[0] > 0 && data[0] < '\t';
+  }
+
+  private static byte[] payload(byte[] data) {
+    if (data[2] == COMPRESSION_LZ4) {
+      int length = ByteBuffer.wrap(data, HEADER_LENGTH, 4).getInt();
+      byte[] payload = new byte[length];
+      LZ4_DECOMPRESSOR.decompress(data, HEADER_LENGTH + 4, payload, 0, length);
+      return payload;
+    }
+    return Arrays.copyOfRange(data, HEADER_LENGTH, data.length);
+  }
+}
@@ -1,6 +1,5 @@
 package com.igot.cb.pores.cache;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.igot.cb.pores.util.Constants;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,48 +7,125 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.SetParams;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class CacheService {
 
+  private static final String LOCK_ACQUIRED = "OK";
+  private static final String UNLOCK_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
   @Autowired
   private JedisPool jedisPool;
   @Autowired
-  private ObjectMapper objectMapper;
+  private CacheCodec cacheCodec;
 
   @Value("${spring.redis.cacheTtl}")
   private long cacheTtl;
 
-  public Jedis getJedis() {
+  /**
+   * Runs the action on a pooled connection and returns the connection to the pool
+   * afterwards. The {@link Jedis} instance must not escape the action.
+   */
+  public <T> T execute(Function<Jedis, T> action) {
     try (Jedis jedis = jedisPool.getResource()) {
-      return jedis;
+      return action.apply(jedis);
     }
   }
 
   public void putCache(String key, Object object) {
     try {
-      String data = objectMapper.writeValueAsString(object);
-      try (Jedis jedis = jedisPool.getResource()) {
-        jedis.set(Constants.REDIS_KEY_PREFIX + key, data);
-        jedis.expire(Constants.REDIS_KEY_PREFIX + key, cacheTtl);
-      }
+      byte[] data = cacheCodec.encode(object);
+      execute(jedis -> jedis.setex(redisKey(key), cacheTtl, data));
     } catch (Exception e) {
       log.error("Error while putting data in Redis cache: {} ", e.getMessage());
     }
   }
 
-  public String getCache(String key) {
+  /**
+   * Writes several values with the default expiry in one round trip.
+   */
+  public void putCache(Map<String, Object> entries) {
+    if (entries.size() == 1) {
+      Map.Entry<String, Object> entry = entries.entrySet().iterator().next();
+      putCache(entry.getKey(), entry.getValue());
+    } else {
+      multiSetWithTtl(entries, cacheTtl);
+    }
+  }
+
+  /**
+   * Writes the entries with the default expiry and deletes the given keys in one round trip.
+   */
+  public void writeCache(Map<String, Object> entries, Collection<String> deletedKeys) {
+    if (deletedKeys.isEmpty()) {
+      putCache(entries);
+    } else if (entries.isEmpty() && deletedKeys.size() == 1) {
+      deleteCache(deletedKeys.iterator().next());
+    } else {
+      writePipelined(entries, cacheTtl, deletedKeys);
+    }
+  }
+
+  /**
+   * Returns the stored value as written by {@link CacheCodec}, or null when it is missing.
+   */
+  public byte[] getCache(String key) {
     try {
-      return getJedis().get(Constants.REDIS_KEY_PREFIX + key);
+      return execute(jedis -> jedis.get(redisKey(key)));
     } catch (Exception e) {
       return null;
     }
   }
 
+  /**
+   * Writes several values with the given expiry in one pipelined round trip.
+   */
+  public void multiSetWithTtl(Map<String, Object> entries, long ttlSeconds) {
+    if (entries.isEmpty()) {
+      return;
+    }
+    writePipelined(entries, ttlSeconds, Collections.emptyList());
+  }
+
+  private void writePipelined(Map<String, Object> entries, long ttlSeconds, Collection<String> deletedKeys) {
+    try {
+      List<byte[]> keys = new ArrayList<>(entries.size());
+      List<byte[]> values = new ArrayList<>(entries.size());
+      for (Map.Entry<String, Object> entry : entries.entrySet()) {
+        keys.add(redisKey(entry.getKey()));
+        values.add(cacheCodec.encode(entry.getValue()));
+      }
+      execute(jedis -> {
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < keys.size(); i++) {
+          pipeline.setex(keys.get(i), ttlSeconds, values.get(i));
+        }
+        for (String key : deletedKeys) {
+          pipeline.del(redisKey(key));
+        }
+        pipeline.sync();
+        return null;
+      });
+    } catch (Exception e) {
+      log.error("Error while putting data in Redis cache: {} ", e.getMessage());
+    }
+  }
+
   public Long deleteCache(String key) {
-    try (Jedis jedis = jedisPool.getResource()) {
-      Long result = jedis.del(Constants.REDIS_KEY_PREFIX + key);
+    try {
+      Long result = execute(jedis -> jedis.del(redisKey(key)));
       if (result == 1) {
         log.info("Field {} deleted successfully from key {}.", key);
       } else {
@@ -61,4 +137,31 @@ public class CacheService {
       return null;
     }
   }
+
+  /**
+   * Takes a lock that expires after the given time unless released with the same token.
+   */
+  public boolean tryLock(String lockKey, String token, long ttlMs) {
+    try {
+      return LOCK_ACQUIRED.equals(execute(jedis -> jedis.set(lockKey, token, SetParams.setParams().nx().px(ttlMs))));
+    } catch (Exception e) {
+      log.error("Error while taking lock {}: {} ", lockKey, e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Releases the lock if it is still held with the given token.
+   */
+  public void unlock(String lockKey, String token) {
+    try {
+      execute(jedis -> jedis.eval(UNLOCK_SCRIPT, Collections.singletonList(lockKey), Collections.singletonList(token)));
+    } catch (Exception e) {
+      log.error("Error while releasing lock {}: {} ", lockKey, e.getMessage());
+    }
+  }
+
+  private static byte[] redisKey(String key) {
+    return (Constants.REDIS_KEY_PREFIX + key).getBytes(StandardCharsets.UTF_8);
+  }
 }
@@ -0,0 +1,124 @@
+package com.igot.cb.pores.cache;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps cache misses on the same key from stampeding the backing store.
+ * <p>
+ * Within a pod, concurrent loads of a key are coalesced into one. Across pods, loads that
+ * go through {@link #loadExclusive} can additionally take a short Redis lock: the pod that
+ * gets it loads, the others wait for the value it caches and only load themselves if it
+ * does not show up in time. {@link #shouldRefreshEarly} spreads the reloads of a popular
+ * entry out before it expires, so they do not all start at the same moment.
+ */
+@Component
+@Slf4j
+public class CacheStampedeGuard {
+
+  private final SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+
+  @Autowired
+  private CacheService cacheService;
+  @Autowired
+  private MetricRegistry metricRegistry;
+
+  @Value("${cache.stampede.lock.enabled}")
+  private boolean lockEnabled;
+
+  @Value("${cache.stampede.lock.ttl.ms}")
+  private long lockTtlMs;
+
+  @Value("${cache.stampede.lock.wait.ms}")
+  private long lockWaitMs;
+
+  @Value("${cache.stampede.lock.poll.ms}")
+  private long lockPollMs;
+
+  @Value("${cache.early.refresh.beta}")
+  private double earlyRefreshBeta;
+
+  private Meter coalescedLoads;
+  private Meter earlyRefreshes;
+  private Meter lockWaitTimeouts;
+
+  @PostConstruct
+  public void init() {
+    coalescedLoads = metricRegistry.meter(MetricRegistry.name(CacheStampedeGuard.class, "coalesced"));
+    earlyRefreshes = metricRegistry.meter(MetricRegistry.name(CacheStampedeGuard.class, "early.refresh"));
+    lockWaitTimeouts = metricRegistry.meter(MetricRegistry.name(CacheStampedeGuard.class, "lock.wait.timeout"));
+  }
+
+  /**
+   * Runs the loader unless a load of the same key is already running in this pod, in which
+   * case its result is shared.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T load(String key, Callable<T> loader) throws Exception {
+    if (singleFlight.isLoading(key)) {
+      coalescedLoads.mark();
+    }
+    return (T) singleFlight.execute(key, (Callable<Object>) loader);
+  }
+
+  /**
+   * Like {@link #load}, and with the Redis lock enabled, only one pod runs the loader at a
+   * time. The others poll {@code cachedValue} until the loading pod has cached the value.
+   */
+  public <T> T loadExclusive(String key, Callable<T> loader, Supplier<T> cachedValue) throws Exception {
+    if (!lockEnabled) {
+      return load(key, loader);
+    }
+    return load(key, () -> {
+      String lockKey = Constants.CACHE_LOCK_PREFIX + key;
+      String token = UUID.randomUUID().toString();
+      if (cacheService.tryLock(lockKey, token, lockTtlMs)) {
+        try {
+          return loader.call();
+        } finally {
+          cacheService.unlock(lockKey, token);
+        }
+      }
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lockWaitMs);
+      while (System.nanoTime() < deadline) {
+        TimeUnit.MILLISECONDS.sleep(lockPollMs);
+        T value = cachedValue.get();
+        if (value != null) {
+          return value;
+        }
+      }
+      lockWaitTimeouts.mark();
+      log.warn("CacheStampedeGuard::loadExclusive: gave up waiting for {} after {}ms", key, lockWaitMs);
+      return loader.call();
+    });
+  }
+
+  /**
+   * Decides whether a cache hit should be reloaded ahead of its expiry. The probability
+   * grows as the entry nears expiry and with how long a reload takes, as in the XFetch
+   * algorithm; a beta of zero disables early refresh.
+   */
+  public boolean shouldRefreshEarly(long remainingTtlMs, double reloadTimeMs) {
+    if (earlyRefreshBeta <= 0 || remainingTtlMs < 0) {
+      return false;
+    }
+    double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+    boolean refresh = -reloadTimeMs * earlyRefreshBeta * Math.log(random) >= remainingTtlMs;
+    if (refresh) {
+      earlyRefreshes.mark();
+    }
+    return refresh;
+  }
+}
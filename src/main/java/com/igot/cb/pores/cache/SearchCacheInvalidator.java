@@ -0,0 +1,264 @@
+package com.igot.cb.pores.cache;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tag index that lets discussion writes evict only the cached search results they affect.
+ * <p>
+ * A cached search is added to one Redis sorted set per filter dimension, named after the value it
+ * filters on, or after {@code *} when it does not filter on that dimension, and to one set
+ * per discussion it returned. A new discussion evicts the searches that could now include
+ * it: for every dimension, those filtering on its value or not filtering at all. A change
+ * to an existing discussion evicts the searches that returned it, and also the ones that
+ * could include it when one of its dimension values changed. Searches with a search string
+ * are also tagged as text searches, and a change to the text of a discussion evicts the
+ * text searches that could include it, since it may now match different search strings.
+ * <p>
+ * Members are scored by the expiry of the search they point to. Registering a search trims
+ * the members that have expired from its tags, and evictions ignore them, so busy tags that
+ * never expire as a whole do not keep growing.
+ * <p>
+ * Evictions run once the Elasticsearch write has completed and the index has refreshed, so
+ * a search racing with the write cannot cache the old result again.
+ */
+@Component
+@Slf4j
+public class SearchCacheInvalidator {
+
+  private static final String ANY = "*";
+  private static final String ID_TAG = "id";
+  private static final String TEXT_TAG = "text";
+
+  /**
+   * Fields a search string is matched against.
+   */
+  private static final List<String> TEXT_FIELDS = Arrays.asList(Constants.TITLE, Constants.DESCRIPTION,
+      Constants.DESCRIPTION_PAYLOAD, Constants.TAGS);
+
+  @Autowired
+  private CacheService cacheService;
+  @Autowired
+  private MetricRegistry metricRegistry;
+
+  @Value("${search.cache.invalidation.dimensions}")
+  private String[] dimensions;
+
+  @Value("${search.cache.invalidation.delay.ms}")
+  private long invalidationDelayMs;
+
+  private ScheduledExecutorService scheduler;
+  private Meter evictedEntries;
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "search-cache-invalidator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    evictedEntries = metricRegistry.meter(MetricRegistry.name(SearchCacheInvalidator.class, "evicted"));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Tags a cached search result. The tag sets expire with the last result they point to.
+   */
+  public void register(String cacheKey, SearchCriteria searchCriteria, List<Map<String, Object>> results, long ttlSeconds) {
+    Set<String> tags = new HashSet<>();
+    Map<String, Object> filters = searchCriteria.getFilterCriteriaMap();
+    for (String dimension : dimensions) {
+      Object filter = filters == null ? null : filters.get(dimension);
+      if (filter instanceof Collection) {
+        for (Object value : (Collection<?>) filter) {
+          tags.add(tag(dimension, value));
+        }
+      } else if (filter instanceof String || filter instanceof Number || filter instanceof Boolean) {
+        tags.add(tag(dimension, filter));
+      } else {
+        tags.add(tag(dimension, ANY));
+      }
+    }
+    if (StringUtils.isNotBlank(searchCriteria.getSearchString())) {
+      tags.add(tag(TEXT_TAG, ANY));
+    }
+    for (Map<String, Object> result : results) {
+      Object discussionId = result.get(Constants.DISCUSSION_ID);
+      if (discussionId != null) {
+        tags.add(tag(ID_TAG, discussionId));
+      }
+    }
+    long now = System.currentTimeMillis();
+    long expiresAt = now + TimeUnit.SECONDS.toMillis(ttlSeconds);
+    try {
+      cacheService.execute(jedis -> {
+        Pipeline pipeline = jedis.pipelined();
+        for (String tag : tags) {
+          pipeline.zremrangeByScore(tag, Double.NEGATIVE_INFINITY, now);
+          pipeline.zadd(tag, expiresAt, cacheKey);
+          pipeline.expire(tag, ttlSeconds);
+        }
+        pipeline.sync();
+        return null;
+      });
+    } catch (Exception e) {
+      log.error("SearchCacheInvalidator::register: failed to tag {}: {}", cacheKey, e.getMessage());
+    }
+  }
+
+  /**
+   * Evicts the searches that could include a new discussion once the write is searchable.
+   */
+  public void evictMatching(Map<String, Object> discussion, CompletableFuture<?> write) {
+    List<Set<String>> tagGroups = matchingTags(discussion);
+    afterWrite(write, () -> evict(tagGroups));
+  }
+
+  /**
+   * Evicts the searches that returned the discussion once the write is searchable.
+   */
+  public void evictContaining(String discussionId, CompletableFuture<?> write) {
+    afterWrite(write, () -> evict(Collections.singletonList(Collections.singleton(tag(ID_TAG, discussionId)))));
+  }
+
+  /**
+   * Evicts the searches affected by an update of the discussion from {@code before} to
+   * {@code after} once the write is searchable.
+   */
+  public void evictUpdated(String discussionId, Map<String, Object> before, Map<String, Object> after,
+      CompletableFuture<?> write) {
+    boolean dimensionChanged = false;
+    for (String dimension : dimensions) {
+      dimensionChanged |= !Objects.equals(stringValue(before.get(dimension)), stringValue(after.get(dimension)));
+    }
+    boolean textChanged = false;
+    for (String field : TEXT_FIELDS) {
+      textChanged |= !Objects.equals(stringValue(before.get(field)), stringValue(after.get(field)));
+    }
+    if (!dimensionChanged && !textChanged) {
+      evictContaining(discussionId, write);
+      return;
+    }
+    if (!dimensionChanged) {
+      List<Set<String>> textTagGroups = matchingTags(after);
+      textTagGroups.add(Collections.singleton(tag(TEXT_TAG, ANY)));
+      afterWrite(write, () -> {
+        evict(Collections.singletonList(Collections.singleton(tag(ID_TAG, discussionId))));
+        evict(textTagGroups);
+      });
+      return;
+    }
+    List<Set<String>> beforeTagGroups = matchingTags(before);
+    List<Set<String>> afterTagGroups = matchingTags(after);
+    afterWrite(write, () -> {
+      evict(Collections.singletonList(Collections.singleton(tag(ID_TAG, discussionId))));
+      evict(beforeTagGroups);
+      evict(afterTagGroups);
+    });
+  }
+
+  private void afterWrite(CompletableFuture<?> write, Runnable eviction) {
+    write.whenComplete((result, error) -> scheduler.schedule(() -> {
+      try {
+        eviction.run();
+      } catch (Exception e) {
+        log.error("SearchCacheInvalidator::afterWrite: eviction failed: {}", e.getMessage());
+      }
+    }, invalidationDelayMs, TimeUnit.MILLISECONDS));
+  }
+
+  private List<Set<String>> matchingTags(Map<String, Object> discussion) {
+    List<Set<String>> tagGroups = new ArrayList<>();
+    for (String dimension : dimensions) {
+      Set<String> group = new HashSet<>();
+      group.add(tag(dimension, ANY));
+      Object value = discussion.get(dimension);
+      if (value != null) {
+        group.add(tag(dimension, value));
+      }
+      tagGroups.add(group);
+    }
+    return tagGroups;
+  }
+
+  /**
+   * Deletes the searches found in at least one tag of every group, that is the intersection
+   * of the groups' unions.
+   */
+  private void evict(List<Set<String>> tagGroups) {
+    long now = System.currentTimeMillis();
+    cacheService.execute(jedis -> {
+      Pipeline pipeline = jedis.pipelined();
+      List<List<Response<Set<String>>>> responses = new ArrayList<>();
+      for (Set<String> group : tagGroups) {
+        List<Response<Set<String>>> groupResponses = new ArrayList<>();
+        for (String tag : group) {
+          groupResponses.add(pipeline.zrangeByScore(tag, now, Double.POSITIVE_INFINITY));
+        }
+        responses.add(groupResponses);
+      }
+      pipeline.sync();
+      Set<String> keys = null;
+      for (List<Response<Set<String>>> groupResponses : responses) {
+        Set<String> groupKeys = new HashSet<>();
+        groupResponses.forEach(response -> groupKeys.addAll(response.get()));
+        if (keys == null) {
+          keys = groupKeys;
+        } else {
+          keys.retainAll(groupKeys);
+        }
+      }
+      if (keys == null || keys.isEmpty()) {
+        return null;
+      }
+      String[] evicted = keys.toArray(new String[0]);
+      pipeline = jedis.pipelined();
+      pipeline.del(evicted);
+      for (Set<String> group : tagGroups) {
+        for (String tag : group) {
+          pipeline.zrem(tag, evicted);
+        }
+      }
+      pipeline.sync();
+      evictedEntries.mark(evicted.length);
+      return null;
+    });
+  }
+
+  private static String tag(String dimension, Object value) {
+    return Constants.SEARCH_CACHE_TAG_PREFIX + dimension + Constants.COLON + value;
+  }
+
+  private static String stringValue(Object value) {
+    return value == null ? null : value.toString();
+  }
+}
@@ -0,0 +1,88 @@
+package com.igot.cb.pores.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
+import com.igot.cb.pores.util.Constants;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds short Redis keys for search results.
+ * <p>
+ * The criteria are normalized first (map entries sorted by key, list elements sorted since
+ * filters, facets and requested fields do not depend on their order) so equivalent requests
+ * share a key. The canonical form is then hashed with 128-bit MurmurHash3.
+ */
+@Component
+public class SearchCacheKeyGenerator {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  public String generateKey(SearchCriteria searchCriteria) {
+    Map<String, Object> canonical = new LinkedHashMap<>();
+    canonical.put("filterCriteriaMap", canonicalize(searchCriteria.getFilterCriteriaMap()));
+    canonical.put("query", canonicalize(searchCriteria.getQuery()));
+    canonical.put("requestedFields", canonicalize(searchCriteria.getRequestedFields()));
+    List<String> facets = searchCriteria.getFacets();
+    canonical.put("facets", facets == null || facets.isEmpty() ? null : canonicalize(facets));
+    canonical.put("searchString", searchCriteria.getSearchString() == null ? null : searchCriteria.getSearchString().toLowerCase());
+    canonical.put("orderBy", searchCriteria.getOrderBy());
+    canonical.put("orderDirection", searchCriteria.getOrderDirection());
+    canonical.put("pageNumber", searchCriteria.getPageNumber());
+    canonical.put("pageSize", searchCriteria.getPageSize());
+    canonical.put("cursor", searchCriteria.getCursor());
+    canonical.put("trackTotalHits", searchCriteria.getTrackTotalHits());
+    canonical.put("resultMode", searchCriteria.getResultMode());
+    long[] hash = MurmurHash3.hash128x64(toBytes(canonical));
+    return Constants.SEARCH_CACHE_KEY_PREFIX + toHex(hash[0]) + toHex(hash[1]);
+  }
+
+  private Object canonicalize(Object value) {
+    if (value instanceof Map) {
+      Map<String, Object> sorted = new TreeMap<>();
+      ((Map<?, ?>) value).forEach((key, entry) -> sorted.put(String.valueOf(key), canonicalize(entry)));
+      return sorted;
+    }
+    if (value instanceof Collection) {
+      List<Object> elements = new ArrayList<>();
+      for (Object element : (Collection<?>) value) {
+        elements.add(canonicalize(element));
+      }
+      elements.sort(Comparator.comparing(this::toJson));
+      return elements;
+    }
+    return value;
+  }
+
+  private String toJson(Object value) {
+    try {
+      return objectMapper.writeValueAsString(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Search criteria cannot be serialized", e);
+    }
+  }
+
+  private byte[] toBytes(Object value) {
+    try {
+      return objectMapper.writeValueAsBytes(value);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Search criteria cannot be serialized", e);
+    }
+  }
+
+  private static String toHex(long value) {
+    String hex = Long.toHexString(value);
+    return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+  }
+}
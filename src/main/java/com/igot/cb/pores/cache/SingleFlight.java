@@ -0,0 +1,50 @@
+package com.igot.cb.pores.cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader and every
+ * caller arriving while it runs waits for, and shares, its result or failure.
+ */
+public class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the loader's result, running it only if no load of the key is already in flight.
+   */
+  public V execute(K key, Callable<V> loader) throws Exception {
+    CompletableFuture<V> created = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+    if (existing != null) {
+      try {
+        return existing.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+    try {
+      V value = loader.call();
+      created.complete(value);
+      return value;
+    } catch (Throwable t) {
+      created.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, created);
+    }
+  }
+
+  /**
+   * Returns whether a load of the key is in flight.
+   */
+  public boolean isLoading(K key) {
+    return inFlight.containsKey(key);
+  }
+}
@@ -0,0 +1,286 @@
+package com.igot.cb.pores.cache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Exception;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near cache in front of {@link CacheService}.
+ * <p>
+ * Reads are served from a size and TTL bounded in-process cache before going to Redis. Both
+ * tiers hold the values as encoded by {@link CacheCodec}; they are decoded on every read so
+ * callers never share a mutable instance.
+ * Every write or delete goes to Redis, drops the local copy and is broadcast on a Redis
+ * pub/sub channel so the other pods drop theirs; the TTL bounds staleness if a message is lost.
+ * <p>
+ * Writes and deletes issued together are sent as one pipeline and invalidated with one
+ * message. With async writes enabled they leave the request thread, so the values passed in
+ * must not be modified afterwards. Each key is always written by the same single-threaded
+ * writer, and deletes queue behind its pending writes, so a write can never land after a
+ * later delete of the same key.
+ */
+@Service
+@Slf4j
+public class TieredCacheService implements MessageListener {
+
+  private static final String SEPARATOR = "|";
+  private static final String KEY_SEPARATOR = "\n";
+
+  private final String originId = UUID.randomUUID().toString();
+
+  private Cache<String, byte[]> nearCache;
+  private Meter redisHits;
+  private Meter redisMisses;
+  private ThreadPoolExecutor[] writers;
+
+  @Autowired
+  private CacheService cacheService;
+  @Autowired
+  private CacheCodec cacheCodec;
+  @Autowired
+  private RedisTemplate<String, Object> redisTemplateObject;
+  @Autowired
+  private RedisMessageListenerContainer redisMessageListenerContainer;
+  @Autowired
+  private MetricRegistry metricRegistry;
+
+  @Value("${cache.near.max.size}")
+  private long nearCacheMaxSize;
+
+  @Value("${cache.near.ttl.seconds}")
+  private long nearCacheTtlSeconds;
+
+  @Value("${cache.invalidation.channel}")
+  private String invalidationChannel;
+
+  @Value("${cache.write.async.enabled}")
+  private boolean asyncWrites;
+
+  @Value("${cache.write.async.threads}")
+  private int asyncWriteThreads;
+
+  @Value("${cache.write.async.queue.capacity}")
+  private int asyncWriteQueueCapacity;
+
+  @PostConstruct
+  public void init() {
+    nearCache = Caffeine.newBuilder()
+        .maximumSize(nearCacheMaxSize)
+        .expireAfterWrite(nearCacheTtlSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    metricRegistry.register(MetricRegistry.name(TieredCacheService.class, "near", "hits"),
+        (Gauge<Long>) () -> nearCache.stats().hitCount());
+    metricRegistry.register(MetricRegistry.name(TieredCacheService.class, "near", "misses"),
+        (Gauge<Long>) () -> nearCache.stats().missCount());
+    metricRegistry.register(MetricRegistry.name(TieredCacheService.class, "near", "evictions"),
+        (Gauge<Long>) () -> nearCache.stats().evictionCount());
+    metricRegistry.register(MetricRegistry.name(TieredCacheService.class, "near", "size"),
+        (Gauge<Long>) () -> nearCache.estimatedSize());
+    redisHits = metricRegistry.meter(MetricRegistry.name(TieredCacheService.class, "redis", "hits"));
+    redisMisses = metricRegistry.meter(MetricRegistry.name(TieredCacheService.class, "redis", "misses"));
+    redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(invalidationChannel));
+    if (asyncWrites) {
+      writers = new ThreadPoolExecutor[asyncWriteThreads];
+      int writerQueueCapacity = Math.max(1, asyncWriteQueueCapacity / asyncWriteThreads);
+      for (int i = 0; i < writers.length; i++) {
+        String threadName = "redis-cache-writer-" + (i + 1);
+        writers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(writerQueueCapacity), runnable -> {
+              Thread thread = new Thread(runnable, threadName);
+              thread.setDaemon(true);
+              return thread;
+            }, TieredCacheService::awaitQueueSpace);
+      }
+    }
+  }
+
+  /**
+   * When a writer's queue is full the request thread waits for space, rather than dropping
+   * the write or running it itself ahead of the writes already queued for the same keys.
+   */
+  private static void awaitQueueSpace(Runnable write, ThreadPoolExecutor writer) {
+    if (writer.isShutdown()) {
+      throw new RejectedExecutionException("Redis cache writer is shut down");
+    }
+    try {
+      writer.getQueue().put(write);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedExecutionException(e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    if (writers != null) {
+      for (ThreadPoolExecutor writer : writers) {
+        writer.shutdown();
+      }
+      for (ThreadPoolExecutor writer : writers) {
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  /**
+   * Returns the cached value, or null when it is missing or cannot be decoded.
+   */
+  public <T> T getCache(String key, TypeReference<T> type) {
+    // Loading inside the near cache makes an invalidation that arrives during the Redis read
+    // wait for the load and then remove its value, rather than be overwritten by it.
+    byte[] value = nearCache.get(key, missingKey -> {
+      byte[] loaded = cacheService.getCache(missingKey);
+      if (loaded == null) {
+        redisMisses.mark();
+      } else {
+        redisHits.mark();
+      }
+      return loaded;
+    });
+    if (value == null) {
+      return null;
+    }
+    try {
+      return cacheCodec.decode(value, type);
+    } catch (IOException | LZ4Exception e) {
+      // A corrupt or truncated entry is a miss; the caller reloads and overwrites it.
+      log.error("TieredCacheService::getCache: failed to decode {}: {}", key, e.getMessage());
+      nearCache.invalidate(key);
+      return null;
+    }
+  }
+
+  public void putCache(String key, Object object) {
+    writeCache(Collections.singletonMap(key, object), Collections.emptySet());
+  }
+
+  public void deleteCache(String key) {
+    writeCache(Collections.emptyMap(), Collections.singleton(key));
+  }
+
+  /**
+   * Writes the entries and deletes the given keys in one Redis round trip, then invalidates
+   * all of them everywhere with one message.
+   */
+  public void writeCache(Map<String, Object> entries, Collection<String> deletedKeys) {
+    Set<String> keys = new HashSet<>(entries.keySet());
+    keys.addAll(deletedKeys);
+    if (keys.isEmpty()) {
+      return;
+    }
+    Runnable write = () -> {
+      cacheService.writeCache(entries, deletedKeys);
+      invalidate(keys);
+    };
+    if (writers == null) {
+      write.run();
+      return;
+    }
+    // Drop the local copies now and again once Redis is updated, so a read racing with the
+    // write cannot keep the old value for the whole near cache TTL.
+    nearCache.invalidateAll(keys);
+    SortedSet<Integer> keyWriters = new TreeSet<>();
+    for (String key : keys) {
+      keyWriters.add(writerOf(key));
+    }
+    if (keyWriters.size() == 1) {
+      writers[keyWriters.first()].execute(write);
+    } else {
+      executeOnAll(keyWriters, write);
+    }
+  }
+
+  /**
+   * Runs the write once every given writer has finished the writes queued before it, holding
+   * them until it is done, so it keeps its place in the order of writes to each of its keys.
+   * Such writes are queued under one lock and in writer order, so two of them never wait on
+   * each other.
+   */
+  private void executeOnAll(SortedSet<Integer> keyWriters, Runnable write) {
+    CountDownLatch ready = new CountDownLatch(keyWriters.size());
+    CountDownLatch done = new CountDownLatch(1);
+    int leader = keyWriters.first();
+    synchronized (writers) {
+      for (int writer : keyWriters) {
+        Runnable task = writer == leader ? () -> {
+          ready.countDown();
+          Uninterruptibles.awaitUninterruptibly(ready);
+          try {
+            write.run();
+          } finally {
+            done.countDown();
+          }
+        } : () -> {
+          ready.countDown();
+          Uninterruptibles.awaitUninterruptibly(done);
+        };
+        try {
+          writers[writer].execute(task);
+        } catch (RejectedExecutionException e) {
+          if (writer == leader) {
+            throw e;
+          }
+          // Shutting down: let the write go ahead without this writer.
+          ready.countDown();
+        }
+      }
+    }
+  }
+
+  private int writerOf(String key) {
+    return Math.floorMod(key.hashCode(), writers.length);
+  }
+
+  private void invalidate(Collection<String> keys) {
+    nearCache.invalidateAll(keys);
+    try {
+      redisTemplateObject.convertAndSend(invalidationChannel, originId + SEPARATOR + String.join(KEY_SEPARATOR, keys));
+    } catch (Exception e) {
+      log.error("TieredCacheService::invalidate: failed to broadcast invalidation of {}: {}", keys, e.getMessage());
+    }
+  }
+
+  @Override
+  public void onMessage(Message message, byte[] pattern) {
+    String body = new String(message.getBody(), StandardCharsets.UTF_8);
+    int separator = body.indexOf(SEPARATOR);
+    if (separator < 0 || body.startsWith(originId + SEPARATOR)) {
+      return;
+    }
+    nearCache.invalidateAll(Arrays.asList(body.substring(separator + 1).split(KEY_SEPARATOR)));
+  }
+}
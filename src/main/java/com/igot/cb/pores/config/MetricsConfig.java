@@ -0,0 +1,33 @@
+package com.igot.cb.pores.config;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Slf4jReporter;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+
+  @Value("${metrics.report.interval.seconds}")
+  private long reportIntervalSeconds;
+
+  @Bean
+  public MetricRegistry metricRegistry() {
+    return new MetricRegistry();
+  }
+
+  @Bean(destroyMethod = "stop")
+  public Slf4jReporter metricsReporter(MetricRegistry metricRegistry) {
+    Slf4jReporter reporter = Slf4jReporter.forRegistry(metricRegistry)
+        .outputTo(LoggerFactory.getLogger("com.igot.cb.metrics"))
+        .convertRatesTo(TimeUnit.SECONDS)
+        .convertDurationsTo(TimeUnit.MILLISECONDS)
+        .build();
+    reporter.start(reportIntervalSeconds, TimeUnit.SECONDS);
+    return reporter;
+  }
+}
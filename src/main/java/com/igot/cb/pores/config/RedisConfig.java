@@ -1,11 +1,14 @@
 package com.igot.cb.pores.config;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
@@ -22,20 +25,42 @@ public class RedisConfig {
   @Value("${spring.redis.port}")
   private int redisPort;
 
+  @Value("${redis.pool.max.total}")
+  private int poolMaxTotal;
+
+  @Value("${redis.pool.max.idle}")
+  private int poolMaxIdle;
+
+  @Value("${redis.pool.min.idle}")
+  private int poolMinIdle;
+
+  @Value("${redis.pool.max.wait.ms}")
+  private long poolMaxWaitMs;
+
   @Bean
-  public JedisPool jedisPool() {
+  public JedisPool jedisPool(MetricRegistry metricRegistry) {
     JedisPoolConfig poolConfig = new JedisPoolConfig();
-    poolConfig.setMaxIdle(128);
-    poolConfig.setMaxTotal(3000);
-    poolConfig.setMinIdle(100);
-    poolConfig.setTestOnBorrow(true);
-    poolConfig.setTestOnReturn(true);
+    poolConfig.setMaxIdle(poolMaxIdle);
+    poolConfig.setMaxTotal(poolMaxTotal);
+    poolConfig.setMinIdle(poolMinIdle);
+    // Idle connections are validated by the evictor instead of a PING on every borrow and return.
+    poolConfig.setTestOnBorrow(false);
+    poolConfig.setTestOnReturn(false);
     poolConfig.setTestWhileIdle(true);
     poolConfig.setMinEvictableIdleTime(Duration.ofMillis(120000));
     poolConfig.setTimeBetweenEvictionRuns(Duration.ofMillis(30000));
     poolConfig.setNumTestsPerEvictionRun(3);
     poolConfig.setBlockWhenExhausted(true);
-    return  new JedisPool(poolConfig, redisHost, redisPort);
+    poolConfig.setMaxWait(Duration.ofMillis(poolMaxWaitMs));
+    JedisPool jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
+    metricRegistry.register(MetricRegistry.name(JedisPool.class, "active"), (Gauge<Integer>) jedisPool::getNumActive);
+    metricRegistry.register(MetricRegistry.name(JedisPool.class, "idle"), (Gauge<Integer>) jedisPool::getNumIdle);
+    metricRegistry.register(MetricRegistry.name(JedisPool.class, "waiters"), (Gauge<Integer>) jedisPool::getNumWaiters);
+    metricRegistry.register(MetricRegistry.name(JedisPool.class, "borrow.wait.mean.ms"),
+        (Gauge<Long>) jedisPool::getMeanBorrowWaitTimeMillis);
+    metricRegistry.register(MetricRegistry.name(JedisPool.class, "borrow.wait.max.ms"),
+        (Gauge<Long>) jedisPool::getMaxBorrowWaitTimeMillis);
+    return jedisPool;
   }
 
   @Bean
@@ -46,4 +71,11 @@ public class RedisConfig {
     redisTemplate.setValueSerializer(new StringRedisSerializer()); // Configure as needed for Object
     return redisTemplate;
   }
+
+  @Bean
+  public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+    RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    return container;
+  }
 }
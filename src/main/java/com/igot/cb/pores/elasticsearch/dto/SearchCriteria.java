@@ -32,4 +32,22 @@ public class SearchCriteria {
     private List<String> facets;
 
     private Map<String, Object> query;
+
+    /**
+     * Switches to cursor pagination when set: an empty cursor requests the first page and
+     * the {@code nextCursor} of a result requests the page after it. The page number is
+     * ignored in this mode.
+     */
+    private String cursor;
+
+    /**
+     * How hits are counted: {@code true} for an exact count, {@code false} for none, or a
+     * number to count exactly up to that many. Elasticsearch's default applies when unset.
+     */
+    private Object trackTotalHits;
+
+    /**
+     * {@code hits} skips the facets, {@code facets} skips the hits; both are returned when unset.
+     */
+    private String resultMode;
 }
@@ -1,6 +1,6 @@
 package com.igot.cb.pores.elasticsearch.dto;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,7 +16,15 @@ import java.util.Map;
 @NoArgsConstructor
 public class SearchResult implements Serializable {
 
-  private JsonNode data;
+  private List<Map<String, Object>> data;
   private Map<String, List<FacetDTO>> facets;
-  private long totalCount;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Long totalCount;
+  /**
+   * {@code gte} when the count stopped at the trackTotalHits limit, otherwise absent.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String totalCountRelation;
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private String nextCursor;
 }
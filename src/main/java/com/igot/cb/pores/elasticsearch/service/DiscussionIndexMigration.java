@@ -0,0 +1,182 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.igot.cb.pores.util.CbServerProperties;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.GetAliasesResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.ReindexRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.xcontent.XContentType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the discussion index onto the current versioned index template.
+ * <p>
+ * Runs only when the service is started with {@code --migrate-discussion-index}. Writes must
+ * go through the alias, so that they move to the new index when the alias is switched:
+ * <ol>
+ * <li>If the alias does not exist yet, it is pointed at the current index and nothing else
+ * happens. Set {@code discussion.entity} to the alias on every instance, then run the
+ * migration again.</li>
+ * <li>Once {@code discussion.entity} is the alias, it creates {@code <alias>_v<version>} from
+ * the template and reindexes the current index into it. It then blocks writes to the current
+ * index, reindexes once more to pick up the writes made during the first pass, and switches
+ * the alias atomically.</li>
+ * </ol>
+ * Both passes keep the source document versions, so the second one only replaces documents
+ * that changed after they were copied. No document can change in either index between the
+ * second pass and the switch; the indexing pipeline holds the writes rejected meanwhile and
+ * sends them through the alias once it points to the new index. The old index is left
+ * read-only.
+ */
+@Component
+@Slf4j
+public class DiscussionIndexMigration implements ApplicationRunner {
+
+    @Autowired
+    private RestHighLevelClient elasticsearchClient;
+
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    @Value("${elasticsearch.discussion.alias}")
+    private String alias;
+
+    @Value("${elasticsearch.discussion.index.version}")
+    private int indexVersion;
+
+    @Value("${elasticsearch.discussion.index.template.path}")
+    private String templatePath;
+
+    @Value("${elasticsearch.discussion.migration.timeout.minutes}")
+    private long migrationTimeoutMinutes;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!args.containsOption(Constants.MIGRATE_DISCUSSION_INDEX)) {
+            return;
+        }
+        String targetIndex = alias + "_v" + indexVersion;
+        Set<String> aliasedIndices = aliasedIndices();
+        if (aliasedIndices.contains(targetIndex)) {
+            log.info("DiscussionIndexMigration::run: alias {} already points to {}", alias, targetIndex);
+            return;
+        }
+        if (aliasedIndices.isEmpty()) {
+            IndicesAliasesRequest aliasesRequest = new IndicesAliasesRequest();
+            aliasesRequest.addAliasAction(IndicesAliasesRequest.AliasActions.add()
+                    .index(cbServerProperties.getDiscussionEntity()).alias(alias));
+            elasticsearchClient.indices().updateAliases(aliasesRequest, RequestOptions.DEFAULT);
+            log.warn("DiscussionIndexMigration::run: alias {} now points to {}; set discussion.entity to {} on every instance and run the migration again",
+                    alias, cbServerProperties.getDiscussionEntity(), alias);
+            return;
+        }
+        if (!alias.equals(cbServerProperties.getDiscussionEntity())) {
+            log.error("DiscussionIndexMigration::run: discussion.entity is {}, writes must go through alias {} before migrating",
+                    cbServerProperties.getDiscussionEntity(), alias);
+            return;
+        }
+        Set<String> sourceIndices = new TreeSet<>(aliasedIndices);
+        log.info("DiscussionIndexMigration::run: migrating {} to {}", sourceIndices, targetIndex);
+        RequestOptions options = migrationRequestOptions();
+
+        createIndex(targetIndex);
+        reindex(sourceIndices, targetIndex, options);
+
+        setWriteBlock(sourceIndices, true);
+        try {
+            // Writes that landed on the old index during the first pass.
+            reindex(sourceIndices, targetIndex, options);
+
+            IndicesAliasesRequest aliasesRequest = new IndicesAliasesRequest();
+            aliasesRequest.addAliasAction(IndicesAliasesRequest.AliasActions.remove()
+                    .indices(aliasedIndices.toArray(new String[0])).alias(alias));
+            aliasesRequest.addAliasAction(IndicesAliasesRequest.AliasActions.add().index(targetIndex).alias(alias));
+            elasticsearchClient.indices().updateAliases(aliasesRequest, options);
+        } catch (IOException | RuntimeException e) {
+            setWriteBlock(sourceIndices, false);
+            throw e;
+        }
+        log.info("DiscussionIndexMigration::run: alias {} switched to {}, {} left read-only", alias, targetIndex, sourceIndices);
+    }
+
+    private void setWriteBlock(Set<String> indices, boolean blocked) throws IOException {
+        UpdateSettingsRequest request = new UpdateSettingsRequest(indices.toArray(new String[0]))
+                .settings(Settings.builder().put(IndexMetadata.SETTING_BLOCKS_WRITE, blocked));
+        elasticsearchClient.indices().putSettings(request, RequestOptions.DEFAULT);
+        log.info("DiscussionIndexMigration::setWriteBlock: writes to {} {}", indices, blocked ? "blocked" : "unblocked");
+    }
+
+    private Set<String> aliasedIndices() throws IOException {
+        GetAliasesResponse response = elasticsearchClient.indices().getAlias(new GetAliasesRequest(alias), RequestOptions.DEFAULT);
+        if (response.status() == RestStatus.NOT_FOUND) {
+            return new TreeSet<>();
+        }
+        return new TreeSet<>(response.getAliases().keySet());
+    }
+
+    private void createIndex(String targetIndex) throws IOException {
+        if (elasticsearchClient.indices().exists(new GetIndexRequest(targetIndex), RequestOptions.DEFAULT)) {
+            log.info("DiscussionIndexMigration::createIndex: {} already exists, reusing it", targetIndex);
+            return;
+        }
+        String template;
+        try (InputStream templateStream = getClass().getResourceAsStream(templatePath)) {
+            if (templateStream == null) {
+                throw new IllegalStateException("Elasticsearch index template not found: " + templatePath);
+            }
+            template = StreamUtils.copyToString(templateStream, StandardCharsets.UTF_8);
+        }
+        elasticsearchClient.indices().create(new CreateIndexRequest(targetIndex).source(template, XContentType.JSON),
+                RequestOptions.DEFAULT);
+        log.info("DiscussionIndexMigration::createIndex: created {} from {}", targetIndex, templatePath);
+    }
+
+    private void reindex(Set<String> sourceIndices, String targetIndex, RequestOptions options) throws IOException {
+        // External versions copy a document only if it is newer than the one already in the target.
+        ReindexRequest request = new ReindexRequest()
+                .setSourceIndices(sourceIndices.toArray(new String[0]))
+                .setDestIndex(targetIndex)
+                .setDestVersionType(VersionType.EXTERNAL)
+                .setRefresh(true);
+        request.setConflicts("proceed");
+        BulkByScrollResponse response = elasticsearchClient.reindex(request, options);
+        if (!response.getBulkFailures().isEmpty() || !response.getSearchFailures().isEmpty()) {
+            throw new IllegalStateException("Reindex into " + targetIndex + " failed: " + response.getBulkFailures().size()
+                    + " bulk failures, " + response.getSearchFailures().size() + " search failures");
+        }
+        log.info("DiscussionIndexMigration::reindex: {} created, {} updated, {} skipped in {}",
+                response.getCreated(), response.getUpdated(), response.getVersionConflicts(), response.getTook());
+    }
+
+    private RequestOptions migrationRequestOptions() {
+        int timeoutMillis = (int) TimeUnit.MINUTES.toMillis(migrationTimeoutMinutes);
+        return RequestOptions.DEFAULT.toBuilder()
+                .setRequestConfig(RequestConfig.custom().setSocketTimeout(timeoutMillis).build())
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.igot.cb.pores.util.CbServerProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Projects documents onto the fields declared in an Elasticsearch field mapping file.
+ * <p>
+ * Each mapping file is parsed once into an immutable field tree (nested "properties"
+ * included) and reused for every write; projection builds a new map in a single pass and
+ * never mutates the caller's document.
+ */
+@Component
+@Slf4j
+public class EsDocumentProjector {
+
+    private static final String PROPERTIES = "properties";
+
+    private final Map<String, FieldSet> fieldSets = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CbServerProperties cbServerProperties;
+
+    @PostConstruct
+    public void init() {
+        fieldSet(cbServerProperties.getElasticDiscussionJsonPath());
+    }
+
+    /**
+     * Returns a copy of the document holding only the fields declared in the mapping file.
+     *
+     * @param document    The document to project.
+     * @param mappingPath Classpath location of the field mapping file.
+     * @return A new map with the whitelisted fields.
+     */
+    public Map<String, Object> project(Map<String, Object> document, String mappingPath) {
+        return project(document, fieldSet(mappingPath));
+    }
+
+    private FieldSet fieldSet(String mappingPath) {
+        return fieldSets.computeIfAbsent(mappingPath, this::loadFieldSet);
+    }
+
+    private FieldSet loadFieldSet(String mappingPath) {
+        try (InputStream mappingStream = getClass().getResourceAsStream(mappingPath)) {
+            if (mappingStream == null) {
+                throw new IllegalStateException("Elasticsearch field mapping not found: " + mappingPath);
+            }
+            Map<String, Object> mapping = objectMapper.readValue(mappingStream, new TypeReference<Map<String, Object>>() {
+            });
+            FieldSet fieldSet = toFieldSet(mapping);
+            log.info("EsDocumentProjector::loadFieldSet: loaded {} fields from {}", fieldSet.fields.size(), mappingPath);
+            return fieldSet;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read Elasticsearch field mapping " + mappingPath, e);
+        }
+    }
+
+    private static FieldSet toFieldSet(Map<?, ?> mapping) {
+        Map<String, FieldSet> fields = new HashMap<>();
+        mapping.forEach((field, definition) -> {
+            FieldSet nested = null;
+            if (definition instanceof Map && ((Map<?, ?>) definition).get(PROPERTIES) instanceof Map) {
+                nested = toFieldSet((Map<?, ?>) ((Map<?, ?>) definition).get(PROPERTIES));
+            }
+            fields.put((String) field, nested);
+        });
+        return new FieldSet(Collections.unmodifiableMap(fields));
+    }
+
+    private static Map<String, Object> project(Map<?, ?> document, FieldSet fieldSet) {
+        Map<String, Object> projected = new HashMap<>();
+        for (Map.Entry<?, ?> entry : document.entrySet()) {
+            String field = (String) entry.getKey();
+            if (!fieldSet.fields.containsKey(field)) {
+                continue;
+            }
+            Object value = entry.getValue();
+            FieldSet nested = fieldSet.fields.get(field);
+            if (nested != null && value instanceof Map) {
+                value = project((Map<?, ?>) value, nested);
+            }
+            projected.put(field, value);
+        }
+        return projected;
+    }
+
+    /**
+     * Immutable set of allowed fields; a null child means the whole value is kept as is.
+     */
+    private static final class FieldSet {
+        private final Map<String, FieldSet> fields;
+
+        private FieldSet(Map<String, FieldSet> fields) {
+            this.fields = fields;
+        }
+    }
+}
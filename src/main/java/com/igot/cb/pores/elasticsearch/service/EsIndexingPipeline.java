@@ -0,0 +1,460 @@
+package com.igot.cb.pores.elasticsearch.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.igot.cb.pores.exceptions.CustomException;
+import com.igot.cb.pores.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.xcontent.XContentType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous, batched writer for Elasticsearch.
+ * <p>
+ * Mutations are queued per document and coalesced: a newer index or delete supersedes
+ * whatever was pending for the same id, partial updates are merged into a pending index or
+ * update, and counter increments are summed. A single
+ * background flusher sends the queue as {@link BulkRequest}s when the batch size or the
+ * flush interval is reached, retrying rejected items with backoff. Items rejected because
+ * their index is write-blocked, as during an index migration, are held and retried without
+ * using up their retries. Enqueueing a new document blocks while the queue is full, which
+ * pushes back on callers instead of dropping writes.
+ * <p>
+ * Writes are not refreshed on their own; callers that must read their own write pass
+ * {@code waitForRefresh} and wait on the returned future.
+ */
+@Component
+@Slf4j
+public class EsIndexingPipeline {
+
+    private static final String CLUSTER_BLOCK_EXCEPTION = "cluster_block_exception";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushRequested = lock.newCondition();
+    private final LinkedHashMap<String, PendingDocument> pending = new LinkedHashMap<>();
+    private boolean urgentFlush;
+    private volatile boolean running;
+    private Thread flusher;
+
+    private Timer flushTimer;
+    private Histogram batchSizes;
+    private Meter failedOperations;
+
+    @Autowired
+    private RestHighLevelClient elasticsearchClient;
+
+    @Autowired
+    private EsDocumentProjector documentProjector;
+
+    @Autowired
+    private MetricRegistry metricRegistry;
+
+    @Value("${elasticsearch.indexing.queue.capacity}")
+    private int queueCapacity;
+
+    @Value("${elasticsearch.indexing.batch.size}")
+    private int batchSize;
+
+    @Value("${elasticsearch.indexing.flush.interval.ms}")
+    private long flushIntervalMs;
+
+    @Value("${elasticsearch.indexing.enqueue.timeout.ms}")
+    private long enqueueTimeoutMs;
+
+    @Value("${elasticsearch.indexing.max.retries}")
+    private int maxRetries;
+
+    @Value("${elasticsearch.indexing.retry.backoff.ms}")
+    private long retryBackoffMs;
+
+    @PostConstruct
+    public void start() {
+        metricRegistry.register(MetricRegistry.name(EsIndexingPipeline.class, "queue.depth"), (Gauge<Integer>) this::queueDepth);
+        flushTimer = metricRegistry.timer(MetricRegistry.name(EsIndexingPipeline.class, "flush"));
+        batchSizes = metricRegistry.histogram(MetricRegistry.name(EsIndexingPipeline.class, "batch.size"));
+        failedOperations = metricRegistry.meter(MetricRegistry.name(EsIndexingPipeline.class, "failed"));
+        running = true;
+        flusher = new Thread(this::runFlusher, "es-indexing-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        log.info("EsIndexingPipeline::stop: flushing {} pending documents", queueDepth());
+        running = false;
+        signalFlush();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        List<PendingDocument> remaining;
+        while (!(remaining = takeBatch(true)).isEmpty()) {
+            remaining.forEach(document -> document.attempts = maxRetries);
+            flush(remaining);
+        }
+    }
+
+    /**
+     * Queues a full document index. The document is projected onto the mapping immediately,
+     * so the caller may keep modifying its map.
+     */
+    public CompletableFuture<Void> index(String esIndexName, String id, Map<String, Object> document, String mappingPath) {
+        return index(esIndexName, id, document, mappingPath, false);
+    }
+
+    public CompletableFuture<Void> index(String esIndexName, String id, Map<String, Object> document, String mappingPath,
+                                         boolean waitForRefresh) {
+        PendingOperation operation = new PendingOperation(OperationType.INDEX);
+        operation.document = documentProjector.project(document, mappingPath);
+        return enqueue(esIndexName, id, operation, waitForRefresh);
+    }
+
+    /**
+     * Queues a partial update carrying only the given fields, projected onto the mapping.
+     */
+    public CompletableFuture<Void> update(String esIndexName, String id, Map<String, Object> fields, String mappingPath) {
+        PendingOperation operation = new PendingOperation(OperationType.UPDATE);
+        operation.document = documentProjector.project(fields, mappingPath);
+        return enqueue(esIndexName, id, operation, false);
+    }
+
+    public CompletableFuture<Void> incrementCounters(String esIndexName, String id, Map<String, Long> increments) {
+        PendingOperation operation = new PendingOperation(OperationType.INCREMENT);
+        operation.increments = new HashMap<>(increments);
+        return enqueue(esIndexName, id, operation, false);
+    }
+
+    public CompletableFuture<Void> delete(String esIndexName, String id) {
+        return enqueue(esIndexName, id, new PendingOperation(OperationType.DELETE), false);
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(String esIndexName, String id, PendingOperation operation, boolean waitForRefresh) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        String key = esIndexName + Constants.DOT + id;
+        lock.lock();
+        try {
+            PendingDocument document = pending.get(key);
+            if (document == null) {
+                long remainingNanos = TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMs);
+                while (pending.size() >= queueCapacity && (document = pending.get(key)) == null) {
+                    if (remainingNanos <= 0) {
+                        log.error("EsIndexingPipeline::enqueue: queue full, dropping {} for {}", operation.type, key);
+                        failedOperations.mark();
+                        future.completeExceptionally(new CustomException(Constants.ES_INDEXING_QUEUE_FULL,
+                                Constants.ES_INDEXING_QUEUE_FULL, HttpStatus.SERVICE_UNAVAILABLE));
+                        return future;
+                    }
+                    remainingNanos = notFull.awaitNanos(remainingNanos);
+                }
+                if (document == null) {
+                    document = new PendingDocument(esIndexName, id);
+                    pending.put(key, document);
+                }
+            }
+            document.append(operation);
+            document.waiters.add(future);
+            if (waitForRefresh) {
+                document.waitForRefresh = true;
+                urgentFlush = true;
+            }
+            if (urgentFlush || pending.size() >= batchSize) {
+                flushRequested.signal();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                List<PendingDocument> batch = awaitBatch();
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("EsIndexingPipeline::runFlusher: unexpected error", e);
+            }
+        }
+    }
+
+    private List<PendingDocument> awaitBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+            while (running && !urgentFlush && pending.size() < batchSize && remainingNanos > 0) {
+                remainingNanos = flushRequested.awaitNanos(remainingNanos);
+            }
+            urgentFlush = false;
+            List<PendingDocument> batch = takeBatch(false);
+            if (batch.isEmpty() && running && !pending.isEmpty()) {
+                // Everything pending is backing off: sleep until the earliest retry is due
+                // rather than spinning, unless a new operation requests a flush first.
+                long earliestRetryAt = Long.MAX_VALUE;
+                for (PendingDocument document : pending.values()) {
+                    earliestRetryAt = Math.min(earliestRetryAt, document.retryAt);
+                }
+                long waitMs = earliestRetryAt - System.currentTimeMillis();
+                if (waitMs > 0) {
+                    flushRequested.awaitNanos(TimeUnit.MILLISECONDS.toNanos(waitMs));
+                }
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<PendingDocument> takeBatch(boolean ignoreBackoff) {
+        lock.lock();
+        try {
+            List<PendingDocument> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            Iterator<PendingDocument> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                PendingDocument document = iterator.next();
+                if (ignoreBackoff || document.retryAt <= now) {
+                    iterator.remove();
+                    batch.add(document);
+                }
+            }
+            if (!batch.isEmpty()) {
+                notFull.signalAll();
+            }
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalFlush() {
+        lock.lock();
+        try {
+            urgentFlush = true;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(List<PendingDocument> batch) {
+        BulkRequest bulkRequest = new BulkRequest();
+        for (PendingDocument document : batch) {
+            for (PendingOperation operation : document.operations) {
+                bulkRequest.add(operation.toRequest(document.esIndexName, document.id));
+            }
+            if (document.waitForRefresh) {
+                bulkRequest.setRefreshPolicy(WriteRequest.RefreshPolicy.WAIT_UNTIL);
+            }
+        }
+        batchSizes.update(bulkRequest.numberOfActions());
+        Timer.Context timer = flushTimer.time();
+        try {
+            BulkResponse bulkResponse = elasticsearchClient.bulk(bulkRequest, RequestOptions.DEFAULT);
+            BulkItemResponse[] items = bulkResponse.getItems();
+            int item = 0;
+            for (PendingDocument document : batch) {
+                List<PendingOperation> failed = new ArrayList<>();
+                boolean retryable = true;
+                boolean writeBlocked = true;
+                String failureMessage = null;
+                for (PendingOperation operation : document.operations) {
+                    BulkItemResponse itemResponse = items[item++];
+                    if (itemResponse.isFailed()) {
+                        failed.add(operation);
+                        retryable &= isRetryable(itemResponse.status());
+                        writeBlocked &= isWriteBlocked(itemResponse);
+                        failureMessage = itemResponse.getFailureMessage();
+                    }
+                }
+                if (failed.isEmpty()) {
+                    document.waiters.forEach(waiter -> waiter.complete(null));
+                } else if (writeBlocked) {
+                    hold(document, failed);
+                } else if (retryable) {
+                    retry(document, failed, failureMessage);
+                } else {
+                    fail(document, failed.size(), failureMessage);
+                }
+            }
+        } catch (Exception e) {
+            log.error("EsIndexingPipeline::flush: bulk request of {} actions failed: {}", bulkRequest.numberOfActions(), e.getMessage());
+            for (PendingDocument document : batch) {
+                retry(document, document.operations, e.getMessage());
+            }
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void retry(PendingDocument document, List<PendingOperation> failed, String failureMessage) {
+        if (++document.attempts > maxRetries) {
+            fail(document, failed.size(), failureMessage);
+            return;
+        }
+        requeue(document, failed, retryBackoffMs * document.attempts);
+    }
+
+    /**
+     * Queues the operations again after the base backoff, without counting an attempt.
+     */
+    private void hold(PendingDocument document, List<PendingOperation> failed) {
+        requeue(document, failed, retryBackoffMs);
+    }
+
+    private void requeue(PendingDocument document, List<PendingOperation> failed, long backoffMs) {
+        document.operations = new ArrayList<>(failed);
+        document.retryAt = System.currentTimeMillis() + backoffMs;
+        lock.lock();
+        try {
+            // Anything queued for the same document meanwhile must still apply after the retried operations.
+            PendingDocument newer = pending.remove(document.key());
+            if (newer != null) {
+                newer.operations.forEach(document::append);
+                document.waiters.addAll(newer.waiters);
+                document.waitForRefresh |= newer.waitForRefresh;
+            }
+            pending.put(document.key(), document);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fail(PendingDocument document, int failedCount, String failureMessage) {
+        log.error("EsIndexingPipeline::fail: giving up on {} operations for {}: {}", failedCount, document.key(), failureMessage);
+        failedOperations.mark(failedCount);
+        CustomException exception = new CustomException(Constants.ES_INDEXING_FAILED, failureMessage, HttpStatus.INTERNAL_SERVER_ERROR);
+        document.waiters.forEach(waiter -> waiter.completeExceptionally(exception));
+    }
+
+    private static boolean isRetryable(RestStatus status) {
+        return status == RestStatus.TOO_MANY_REQUESTS || status == RestStatus.SERVICE_UNAVAILABLE
+                || status == RestStatus.GATEWAY_TIMEOUT || status == RestStatus.CONFLICT;
+    }
+
+    private static boolean isWriteBlocked(BulkItemResponse itemResponse) {
+        return itemResponse.status() == RestStatus.FORBIDDEN
+                && itemResponse.getFailureMessage().contains(CLUSTER_BLOCK_EXCEPTION);
+    }
+
+    private enum OperationType {
+        INDEX, UPDATE, INCREMENT, DELETE
+    }
+
+    private static final class PendingOperation {
+        private final OperationType type;
+        private Map<String, Object> document;
+        private Map<String, Long> increments;
+
+        private PendingOperation(OperationType type) {
+            this.type = type;
+        }
+
+        private DocWriteRequest<?> toRequest(String esIndexName, String id) {
+            switch (type) {
+                case INDEX:
+                    return new IndexRequest(esIndexName).id(id).source(document, XContentType.JSON);
+                case UPDATE:
+                    return EsUtilServiceImpl.partialUpdateRequest(esIndexName, id, document);
+                case INCREMENT:
+                    return EsUtilServiceImpl.incrementCountersRequest(esIndexName, id, increments);
+                default:
+                    return new DeleteRequest(esIndexName, id);
+            }
+        }
+    }
+
+    private static final class PendingDocument {
+        private final String esIndexName;
+        private final String id;
+        private List<PendingOperation> operations = new ArrayList<>();
+        private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        private boolean waitForRefresh;
+        private int attempts;
+        private long retryAt;
+
+        private PendingDocument(String esIndexName, String id) {
+            this.esIndexName = esIndexName;
+            this.id = id;
+        }
+
+        private String key() {
+            return esIndexName + Constants.DOT + id;
+        }
+
+        /**
+         * Coalesces the operation with what is already pending for this document.
+         */
+        private void append(PendingOperation operation) {
+            if (operation.type == OperationType.INDEX || operation.type == OperationType.DELETE) {
+                operations.clear();
+                operations.add(operation);
+                return;
+            }
+            PendingOperation last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+            if (operation.type == OperationType.UPDATE) {
+                if (last != null && (last.type == OperationType.INDEX || last.type == OperationType.UPDATE)) {
+                    last.document.putAll(operation.document);
+                } else {
+                    operations.add(operation);
+                }
+                return;
+            }
+            if (last != null && last.type == OperationType.INCREMENT) {
+                operation.increments.forEach((field, delta) -> last.increments.merge(field, delta, Long::sum));
+            } else if (last != null && last.type == OperationType.INDEX) {
+                operation.increments.forEach((field, delta) -> {
+                    Object current = last.document.get(field);
+                    long value = current instanceof Number ? ((Number) current).longValue() : 0L;
+                    last.document.put(field, value + delta);
+                });
+            } else {
+                operations.add(operation);
+            }
+        }
+    }
+}
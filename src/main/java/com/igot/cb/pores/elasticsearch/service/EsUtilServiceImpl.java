@@ -1,6 +1,5 @@
 package com.igot.cb.pores.elasticsearch.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.igot.cb.pores.elasticsearch.config.EsConfig;
@@ -9,8 +8,8 @@ import com.igot.cb.pores.elasticsearch.dto.SearchCriteria;
 import com.igot.cb.pores.elasticsearch.dto.SearchResult;
 import com.igot.cb.pores.exceptions.CustomException;
 import com.igot.cb.pores.util.Constants;
-import com.networknt.schema.JsonSchemaFactory;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.search.TotalHits;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -21,11 +20,14 @@ import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.index.query.*;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
@@ -35,11 +37,11 @@ import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.xcontent.XContentType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -47,6 +49,17 @@ import java.util.Map.Entry;
 @Slf4j
 public class EsUtilServiceImpl implements EsUtilService {
 
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    private static final String RESULT_MODE_HITS = "hits";
+    private static final String RESULT_MODE_FACETS = "facets";
+
+    private static final String INCREMENT_COUNTERS_SCRIPT =
+            "for (def entry : params.increments.entrySet()) {"
+                    + " def current = ctx._source[entry.getKey()];"
+                    + " ctx._source[entry.getKey()] = (current == null ? 0 : current) + entry.getValue(); }";
+
+    private static final String SEARCH_MODE_TEXT = "text";
+
     /*@Autowired
     private RestHighLevelClient elasticsearchClient;*/
     private final EsConfig esConfig;
@@ -55,6 +68,12 @@ public class EsUtilServiceImpl implements EsUtilService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EsDocumentProjector documentProjector;
+
+    @Value("${elasticsearch.search.mode}")
+    private String searchMode;
+
     @Autowired
     public EsUtilServiceImpl(RestHighLevelClient elasticsearchClient, EsConfig esConnection) {
         this.elasticsearchClient = elasticsearchClient;
@@ -67,21 +86,9 @@ public class EsUtilServiceImpl implements EsUtilService {
             String esIndexName, String type, String id, Map<String, Object> document, String JsonFilePath) {
         log.info("EsUtilServiceImpl :: addDocument");
         try {
-            JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-            InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(JsonFilePath);
-            Map<String, Object> map = objectMapper.readValue(schemaStream,
-                    new TypeReference<Map<String, Object>>() {
-                    });
-            Iterator<Entry<String, Object>> iterator = document.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> entry = iterator.next();
-                String key = entry.getKey();
-                if (!map.containsKey(key)) {
-                    iterator.remove();
-                }
-            }
+            Map<String, Object> filteredDocument = documentProjector.project(document, JsonFilePath);
             IndexRequest indexRequest =
-                    new IndexRequest(esIndexName, type, id).source(document, XContentType.JSON).setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
+                    new IndexRequest(esIndexName, type, id).source(filteredDocument, XContentType.JSON).setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
             IndexResponse response = elasticsearchClient.index(indexRequest, RequestOptions.DEFAULT);
             log.info("EsUtilServiceImpl :: addDocument :Insertion response {}", response.status());
             return response.status();
@@ -95,23 +102,11 @@ public class EsUtilServiceImpl implements EsUtilService {
     public RestStatus updateDocument(
             String index, String indexType, String entityId, Map<String, Object> updatedDocument, String JsonFilePath) {
         try {
-            JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-            InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(JsonFilePath);
-            Map<String, Object> map = objectMapper.readValue(schemaStream,
-                    new TypeReference<Map<String, Object>>() {
-                    });
-            Iterator<Entry<String, Object>> iterator = updatedDocument.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Entry<String, Object> entry = iterator.next();
-                String key = entry.getKey();
-                if (!map.containsKey(key)) {
-                    iterator.remove();
-                }
-            }
+            Map<String, Object> filteredDocument = documentProjector.project(updatedDocument, JsonFilePath);
             IndexRequest indexRequest =
                     new IndexRequest(index)
                             .id(entityId)
-                            .source(updatedDocument)
+                            .source(filteredDocument)
                             .setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE);
             IndexResponse response = elasticsearchClient.index(indexRequest, RequestOptions.DEFAULT);
             return response.status();
@@ -120,6 +115,18 @@ public class EsUtilServiceImpl implements EsUtilService {
         }
     }
 
+    static UpdateRequest partialUpdateRequest(String esIndexName, String id, Map<String, Object> fields) {
+        return new UpdateRequest(esIndexName, id).doc(fields, XContentType.JSON).retryOnConflict(3);
+    }
+
+    static UpdateRequest incrementCountersRequest(String esIndexName, String id, Map<String, Long> increments) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("increments", increments);
+        return new UpdateRequest(esIndexName, id)
+                .script(new Script(ScriptType.INLINE, "painless", INCREMENT_COUNTERS_SCRIPT, params))
+                .retryOnConflict(3);
+    }
+
     @Override
     public void deleteDocument(String documentId, String esIndexName) {
         try {
@@ -141,11 +148,24 @@ public class EsUtilServiceImpl implements EsUtilService {
         SearchRequest searchRequest = new SearchRequest(esIndexName);
         searchRequest.source(searchSourceBuilder);
         try {
-            if (searchSourceBuilder != null) {
-                int pageNumber = searchCriteria.getPageNumber();
-                int pageSize = searchCriteria.getPageSize();
-                int from = pageNumber * pageSize;
-                searchSourceBuilder.from(from);
+            boolean cursorPagination = searchCriteria.getCursor() != null;
+            boolean facetsOnly = RESULT_MODE_FACETS.equalsIgnoreCase(searchCriteria.getResultMode());
+            int pageSize = searchCriteria.getPageSize();
+            if (cursorPagination && pageSize == 0) {
+                pageSize = DEFAULT_PAGE_SIZE;
+            }
+            if (searchSourceBuilder != null && facetsOnly) {
+                // Size 0 responses are eligible for the shard request cache.
+                searchSourceBuilder.size(0);
+                searchRequest.requestCache(true);
+            } else if (searchSourceBuilder != null) {
+                if (cursorPagination) {
+                    if (!searchCriteria.getCursor().isEmpty()) {
+                        searchSourceBuilder.searchAfter(decodeCursor(searchCriteria.getCursor()));
+                    }
+                } else {
+                    searchSourceBuilder.from(searchCriteria.getPageNumber() * pageSize);
+                }
                 if (pageSize != 0) {
                     searchSourceBuilder.size(pageSize);
                 }
@@ -156,9 +176,19 @@ public class EsUtilServiceImpl implements EsUtilService {
             Map<String, List<FacetDTO>> fieldAggregations =
                     extractFacetData(paginatedSearchResponse, searchCriteria);
             SearchResult searchResult = new SearchResult();
-            searchResult.setData(objectMapper.valueToTree(paginatedResult));
+            searchResult.setData(paginatedResult);
             searchResult.setFacets(fieldAggregations);
-            searchResult.setTotalCount(paginatedSearchResponse.getHits().getTotalHits().value);
+            TotalHits totalHits = paginatedSearchResponse.getHits().getTotalHits();
+            if (totalHits != null) {
+                searchResult.setTotalCount(totalHits.value);
+                if (totalHits.relation == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO) {
+                    searchResult.setTotalCountRelation(Constants.GTE);
+                }
+            }
+            SearchHit[] hits = paginatedSearchResponse.getHits().getHits();
+            if (cursorPagination && !facetsOnly && hits.length == pageSize) {
+                searchResult.setNextCursor(encodeCursor(hits[hits.length - 1].getSortValues()));
+            }
             return searchResult;
         } catch (IOException e) {
             log.error("Error while fetching details from elastic search");
@@ -169,7 +199,7 @@ public class EsUtilServiceImpl implements EsUtilService {
     private Map<String, List<FacetDTO>> extractFacetData(
             SearchResponse searchResponse, SearchCriteria searchCriteria) {
         Map<String, List<FacetDTO>> fieldAggregations = new HashMap<>();
-        if (searchCriteria.getFacets() != null) {
+        if (searchCriteria.getFacets() != null && searchResponse.getAggregations() != null) {
             for (String field : searchCriteria.getFacets()) {
                 Terms fieldAggregation = searchResponse.getAggregations().get(field + "_agg");
                 List<FacetDTO> fieldValueList = new ArrayList<>();
@@ -208,10 +238,17 @@ public class EsUtilServiceImpl implements EsUtilService {
        // addQueryStringToFilter(searchCriteria.getSearchString(), boolQueryBuilder);
         String searchString = searchCriteria.getSearchString();
         if (isNotBlank(searchString)) {
-            QueryBuilder matchPhraseQuery = getMatchPhraseQuery("searchTags.keyword", searchString, true,boolQueryBuilder);
-            boolQueryBuilder.must(matchPhraseQuery);
+            if (SEARCH_MODE_TEXT.equalsIgnoreCase(searchMode)) {
+                boolQueryBuilder.must(getTextSearchQuery(searchString));
+            } else {
+                QueryBuilder matchPhraseQuery = getMatchPhraseQuery("searchTags.keyword", searchString, true,boolQueryBuilder);
+                boolQueryBuilder.must(matchPhraseQuery);
+            }
         }
-        addFacetsToSearchSourceBuilder(searchCriteria.getFacets(), searchSourceBuilder);
+        if (!RESULT_MODE_HITS.equalsIgnoreCase(searchCriteria.getResultMode())) {
+            addFacetsToSearchSourceBuilder(searchCriteria.getFacets(), searchSourceBuilder);
+        }
+        addTrackTotalHits(searchCriteria.getTrackTotalHits(), searchSourceBuilder);
         QueryBuilder queryPart = buildQueryPart(searchCriteria.getQuery());
         boolQueryBuilder.must(queryPart);
         log.info("final search query result {}", searchSourceBuilder);
@@ -287,12 +324,42 @@ public class EsUtilServiceImpl implements EsUtilService {
 
     private void addSortToSearchSourceBuilder(
             SearchCriteria searchCriteria, SearchSourceBuilder searchSourceBuilder) {
-        if (isNotBlank(searchCriteria.getOrderBy()) && isNotBlank(searchCriteria.getOrderDirection())) {
+        boolean sorted = isNotBlank(searchCriteria.getOrderBy()) && isNotBlank(searchCriteria.getOrderDirection());
+        if (sorted) {
             SortOrder sortOrder =
                     Constants.ASC.equals(searchCriteria.getOrderDirection()) ? SortOrder.ASC : SortOrder.DESC;
             searchSourceBuilder.sort(
                     SortBuilders.fieldSort(searchCriteria.getOrderBy() + Constants.KEYWORD).order(sortOrder));
         }
+        if (searchCriteria.getCursor() != null) {
+            // search_after needs a total order: relevance by default, then the unique id.
+            if (!sorted) {
+                searchSourceBuilder.sort(SortBuilders.scoreSort());
+            }
+            searchSourceBuilder.sort(SortBuilders.fieldSort(Constants.DISCUSSION_ID + Constants.KEYWORD).order(SortOrder.ASC));
+        }
+    }
+
+    private void addTrackTotalHits(Object trackTotalHits, SearchSourceBuilder searchSourceBuilder) {
+        if (trackTotalHits instanceof Boolean) {
+            searchSourceBuilder.trackTotalHits((Boolean) trackTotalHits);
+        } else if (trackTotalHits instanceof Number) {
+            searchSourceBuilder.trackTotalHitsUpTo(((Number) trackTotalHits).intValue());
+        } else if (trackTotalHits != null) {
+            throw new CustomException(Constants.INVALID_TRACK_TOTAL_HITS, Constants.INVALID_TRACK_TOTAL_HITS, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private String encodeCursor(Object[] sortValues) throws IOException {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(sortValues));
+    }
+
+    private Object[] decodeCursor(String cursor) {
+        try {
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), Object[].class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new CustomException(Constants.INVALID_CURSOR, Constants.INVALID_CURSOR, HttpStatus.BAD_REQUEST);
+        }
     }
 
     private void addRequestedFieldsToSearchSourceBuilder(
@@ -332,6 +399,25 @@ public class EsUtilServiceImpl implements EsUtilService {
         return queryBuilder;
     }
 
+    /**
+     * Relevance-scored search on the analyzed title, tags and description fields; the
+     * trigram subfields match fragments of words the way the old regexp search did.
+     */
+    private QueryBuilder getTextSearchQuery(String searchString) {
+        return QueryBuilders.boolQuery()
+                .should(QueryBuilders.multiMatchQuery(searchString)
+                        .field(Constants.TITLE, 3.0f)
+                        .field(Constants.TAGS, 2.0f)
+                        .field(Constants.DESCRIPTION)
+                        .type(MultiMatchQueryBuilder.Type.BEST_FIELDS))
+                .should(QueryBuilders.multiMatchQuery(searchString)
+                        .field(Constants.TITLE + Constants.NGRAM, 1.5f)
+                        .field(Constants.TAGS + Constants.NGRAM)
+                        .field(Constants.DESCRIPTION + Constants.NGRAM, 0.5f)
+                        .operator(Operator.AND))
+                .minimumShouldMatch(1);
+    }
+
     private void addFacetsToSearchSourceBuilder(
             List<String> facets, SearchSourceBuilder searchSourceBuilder) {
         if (facets != null) {
@@ -16,6 +16,12 @@ public class CbServerProperties {
   @Value("${search.result.redis.ttl}")
   private long searchResultRedisTtl;
 
+  @Value("${discussion.search.enrichment.budget.ms}")
+  private long searchEnrichmentBudgetMs;
+
+  @Value("${discussion.answerPost.max.page.size}")
+  private int answerPostMaxPageSize;
+
   @Value("${elastic.required.field.discussion.json.path}")
   private String elasticDiscussionJsonPath;
 
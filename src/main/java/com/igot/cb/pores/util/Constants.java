@@ -15,6 +15,16 @@ public class Constants {
     public static final String POOL_TIMEOUT = "poolTimeoutMillis";
     public static final String CASSANDRA_CONFIG_HOST = "cassandra.config.host";
     public static final String SUNBIRD_CASSANDRA_CONSISTENCY_LEVEL = "LOCAL_QUORUM";
+    public static final String CASSANDRA_LOCAL_DATACENTER = "spring.data.cassandra.local-datacenter";
+    public static final String PROTOCOL_VERSION = "protocolVersion";
+    public static final String COMPRESSION = "compression";
+    public static final String TOKEN_AWARE_ROUTING = "tokenAwareRouting";
+    public static final String LATENCY_AWARE_ROUTING = "latencyAwareRouting";
+    public static final String USED_HOSTS_PER_REMOTE_DC = "usedHostsPerRemoteDc";
+    public static final String SPECULATIVE_EXECUTION_ENABLED = "speculativeExecutionEnabled";
+    public static final String SPECULATIVE_EXECUTION_PERCENTILE = "speculativeExecutionPercentile";
+    public static final String SPECULATIVE_EXECUTION_MAX = "speculativeExecutionMaxExecutions";
+    public static final String SPECULATIVE_EXECUTION_HIGHEST_LATENCY_MS = "speculativeExecutionHighestTrackableLatencyMillis";
     public static final String EXCEPTION_MSG_FETCH = "Exception occurred while fetching record from ";
     public static final String INSERT_INTO = "INSERT INTO ";
     public static final String DOT = ".";
@@ -30,6 +40,7 @@ public class Constants {
     public static final String INDEX_TYPE = "_doc";
     public static final String REDIS_KEY_PREFIX = "cbpores_";
     public static final String KEYWORD = ".keyword";
+    public static final String NGRAM = ".ngram";
     public static final String ASC = "asc";
     public static final String DOT_SEPARATOR = ".";
     public static final String SHA_256_WITH_RSA = "SHA256withRSA";
@@ -73,6 +84,8 @@ public class Constants {
     public static final  String DISCUSSION_IS_NOT_ACTIVE = "Discussion is not active";
     public static final String DISCUSSION_UPDATE_VALIDATION_FILE ="/payloadValidation/discussionUpdateValidation.json";
     public static final String USER_DISCUSSION_VOTES = "user_discussion_votes";
+    public static final String DISCUSSION_VOTE_COUNTS = "discussion_vote_counts";
+    public static final String APPLIED = "[applied]";
     public static final String DISCUSSION_ID_KEY = "discussionid";
     public static final String EXCEPTION_MSG_DELETE = "Exception occurred while deleting record from ";
     public static final String VOTE_COUNT = "voteCount";
@@ -103,13 +116,12 @@ public class Constants {
     public static final String DELETED_SUCCESSFULLY = "deleted successfully";
     public static final String NO_DATA_FOUND = "No data found";
     public static final String USER_ID_RQST = "userId";
-    public static final String REQUEST_PAYLOAD = "requestPayload";
-    public static final String JWT_SECRET_KEY = "demand_search_result";
     public static final String FAILED_CONST = "FAILED";
     public static final String X_AUTH_TOKEN = "x-authenticated-user-token";
     public static final String UPDATED_ON = "updatedOn";
     public static final String MEDIA = "mediaUrls";
     public static final String USER_PREFIX = "user:" ;
+    public static final String DISCUSSION_AUTHOR_PREFIX = "discussion:author:";
     public static final String USER_TABLE = "user";
     public static final String PROFILE_DETAILS = "profiledetails";
     public static final String FIRST_NAME = "firstname";
@@ -144,6 +156,22 @@ public class Constants {
     public static final String URL = "url";
     public static final String UPLOAD_FILE = "api.file.upload";
     public static final String DISCUSSION_FILE_EMPTY = "File is empty";
+    public static final String ES_INDEXING_QUEUE_FULL = "Elasticsearch indexing queue is full";
+    public static final String ES_INDEXING_FAILED = "Elasticsearch indexing failed";
+    public static final String DESCRIPTION = "description";
+    public static final String MIGRATE_DISCUSSION_INDEX = "migrate-discussion-index";
+    public static final String SEARCH_CACHE_KEY_PREFIX = "dsearch:v3:";
+    public static final String SEARCH_CACHE_TAG_PREFIX = "dsearch:ztag:";
+    public static final String COLON = ":";
+    public static final String CACHE_LOCK_PREFIX = "dlock:";
+    public static final String PAGE_NUMBER = "pageNumber";
+    public static final String PAGE_SIZE = "pageSize";
+    public static final String TOTAL_COUNT = "totalCount";
+    public static final String INVALID_PAGE_SIZE = "pageSize must be between 1 and ";
+    public static final String FAILED_TO_FETCH_ANSWER_POSTS = "Failed to fetch the answer posts";
+    public static final String INVALID_CURSOR = "Invalid search cursor";
+    public static final String INVALID_TRACK_TOTAL_HITS = "trackTotalHits must be true, false or a number";
+    public static final String GTE = "gte";
     private Constants() {
     }
 }
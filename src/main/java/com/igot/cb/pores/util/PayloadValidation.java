@@ -1,5 +1,7 @@
 package com.igot.cb.pores.util;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.igot.cb.pores.exceptions.CustomException;
 import com.networknt.schema.JsonSchema;
@@ -8,34 +10,138 @@ import com.networknt.schema.ValidationMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
 import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Validates request payloads against the JSON schemas under /payloadValidation.
+ * <p>
+ * Schemas are compiled once at startup and kept in an immutable registry; when hot reload
+ * is enabled the registry is rebuilt and swapped whenever a schema file changes.
+ */
 @Slf4j
 @Service
 public class PayloadValidation {
 
+  private static final List<String> SCHEMA_FILES = Arrays.asList(
+      Constants.DISCUSSION_VALIDATION_FILE,
+      Constants.DISCUSSION_UPDATE_VALIDATION_FILE,
+      Constants.DISCUSSION_ANSWER_POST_VALIDATION_FILE);
+
   private Logger logger = LoggerFactory.getLogger(PayloadValidation.class);
 
+  private final JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
+
+  private volatile Map<String, JsonSchema> schemas = Collections.emptyMap();
+  private volatile Map<String, Long> schemaLastModified = Collections.emptyMap();
+
+  @Autowired
+  private MetricRegistry metricRegistry;
+
+  @Value("${payload.validation.hot.reload.enabled}")
+  private boolean hotReloadEnabled;
+
+  @PostConstruct
+  public void init() {
+    loadSchemas();
+    logger.info("PayloadValidation::init: compiled {} schemas", schemas.size());
+  }
+
   public void validatePayload(String fileName, JsonNode payload) {
-//    log.info("PayloadValidation::validatePayload:inside");
+    Timer.Context timer = metricRegistry.timer(MetricRegistry.name(PayloadValidation.class, "validate", fileName)).time();
     try {
-      JsonSchemaFactory schemaFactory = JsonSchemaFactory.getInstance();
-      InputStream schemaStream = schemaFactory.getClass().getResourceAsStream(fileName);
-      JsonSchema schema = schemaFactory.getSchema(schemaStream);
+      JsonSchema schema = schemas.get(fileName);
+      if (schema == null) {
+        logger.warn("PayloadValidation::validatePayload: schema {} is not registered, compiling it", fileName);
+        schema = compileSchema(fileName);
+      }
       if (payload.isArray()) {
         for (JsonNode objectNode : payload) {
           validateObject(schema, objectNode);
         }
-      } else{
+      } else {
         validateObject(schema, payload);
       }
     } catch (Exception e) {
       logger.error("Failed to validate payload", e);
       throw new CustomException("Failed to validate payload", e.getMessage(), HttpStatus.BAD_REQUEST);
+    } finally {
+      timer.stop();
+    }
+  }
+
+  /**
+   * Recompiles the registry when any schema file has been modified since it was loaded.
+   */
+  @Scheduled(fixedDelayString = "${payload.validation.hot.reload.interval.ms}")
+  public void reloadChangedSchemas() {
+    if (!hotReloadEnabled) {
+      return;
+    }
+    for (String fileName : SCHEMA_FILES) {
+      Long loadedAt = schemaLastModified.get(fileName);
+      if (loadedAt == null || lastModified(fileName) != loadedAt) {
+        logger.info("PayloadValidation::reloadChangedSchemas: {} changed, reloading schemas", fileName);
+        try {
+          loadSchemas();
+        } catch (Exception e) {
+          logger.error("Failed to reload payload schemas, keeping the previous ones", e);
+        }
+        return;
+      }
+    }
+  }
+
+  private void loadSchemas() {
+    Map<String, JsonSchema> compiled = new HashMap<>();
+    Map<String, Long> modifiedTimes = new HashMap<>();
+    for (String fileName : SCHEMA_FILES) {
+      modifiedTimes.put(fileName, lastModified(fileName));
+      compiled.put(fileName, compileSchema(fileName));
+    }
+    schemas = Collections.unmodifiableMap(compiled);
+    schemaLastModified = Collections.unmodifiableMap(modifiedTimes);
+  }
+
+  private JsonSchema compileSchema(String fileName) {
+    try (InputStream schemaStream = getClass().getResourceAsStream(fileName)) {
+      if (schemaStream == null) {
+        throw new IllegalStateException("Schema file not found: " + fileName);
+      }
+      return schemaFactory.getSchema(schemaStream);
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read schema file: " + fileName, e);
+    }
+  }
+
+  private long lastModified(String fileName) {
+    URL url = getClass().getResource(fileName);
+    if (url == null) {
+      return -1L;
+    }
+    try {
+      URLConnection connection = url.openConnection();
+      connection.setUseCaches(false);
+      long modified = connection.getLastModified();
+      connection.getInputStream().close();
+      return modified;
+    } catch (IOException e) {
+      return -1L;
     }
   }
 
@@ -51,4 +157,3 @@ public class PayloadValidation {
     }
   }
 }
-
@@ -0,0 +1,50 @@
+package com.igot.cb.pores.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * An already serialized value that is copied token by token into the enclosing response,
+ * so cached payloads reach the client without being bound to objects again. The value may
+ * be in any format Jackson can parse, such as Smile.
+ */
+public class RawJson implements JsonSerializable {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final byte[] content;
+  private final JsonFactory factory;
+
+  public RawJson(byte[] json) {
+    this(json, JSON_FACTORY);
+  }
+
+  public RawJson(byte[] content, JsonFactory factory) {
+    this.content = content;
+    this.factory = factory;
+  }
+
+  public byte[] getBytes() {
+    return content;
+  }
+
+  @Override
+  public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+    try (JsonParser parser = factory.createParser(content)) {
+      parser.nextToken();
+      gen.copyCurrentStructure(parser);
+    }
+  }
+
+  @Override
+  public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+      throws IOException {
+    serialize(gen, serializers);
+  }
+}
@@ -0,0 +1,83 @@
+package com.igot.cb.transactional.cassandrautils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link CassandraOperation}.
+ * <p>
+ * Statements are sent with the driver's {@code executeAsync} and the returned futures
+ * complete on a driver I/O thread, so callers should keep their continuations short or move
+ * them to their own executor. Unlike the blocking methods, failures are not turned into a
+ * {@code FAILED} response: the future completes exceptionally instead.
+ * <p>
+ * The first statement of a given shape is prepared synchronously, which the driver refuses
+ * to do on its I/O threads, so these methods must not be called from a continuation running
+ * there.
+ */
+public interface AsyncCassandraOperation {
+
+    /**
+     * Inserts a record into Cassandra only if no row with its primary key exists, as a
+     * lightweight transaction.
+     *
+     * @param keyspaceName The name of the keyspace containing the table.
+     * @param tableName    The name of the table into which to insert the record.
+     * @param request      A map representing the record to insert.
+     * @return A future of the transaction result: {@link com.igot.cb.pores.util.Constants#APPLIED}
+     * tells whether the record was inserted and, if it was not, the existing row's columns follow.
+     */
+    CompletableFuture<Map<String, Object>> insertRecordIfNotExistsAsync(String keyspaceName, String tableName,
+            Map<String, Object> request);
+
+    /**
+     * Retrieves the records matching the given properties without {@code ALLOW FILTERING}.
+     * List values are matched with {@code IN}.
+     *
+     * @param keyspaceName The name of the keyspace containing the table.
+     * @param tableName    The name of the table from which to retrieve records.
+     * @param propertyMap  A map representing properties to filter records.
+     * @param fields       A list of fields to include in the retrieved records, or null for all.
+     * @param limit        The maximum number of records, or null for no limit.
+     * @return A future of the retrieved records.
+     */
+    CompletableFuture<List<Map<String, Object>>> getRecordsByPropertiesWithoutFilteringAsync(String keyspaceName,
+            String tableName, Map<String, Object> propertyMap, List<String> fields, Integer limit);
+
+    /**
+     * Like {@link #getRecordsByPropertiesWithoutFilteringAsync(String, String, Map, List, Integer)},
+     * but maps each row with the given mapper instead of building a map per row. The mapper
+     * runs on the driver I/O thread.
+     */
+    <T> CompletableFuture<List<T>> getRecordsByPropertiesWithoutFilteringAsync(String keyspaceName, String tableName,
+            Map<String, Object> propertyMap, List<String> fields, Integer limit, RowMapper<T> rowMapper);
+
+    /**
+     * Updates the record identified by a composite primary key only if its current column
+     * values match {@code conditions}, as a lightweight transaction.
+     *
+     * @param keyspaceName     Keyspace name
+     * @param tableName        Table name
+     * @param updateAttributes Column map to be used in set clause of update query
+     * @param compositeKey     Column map for composite primary key
+     * @param conditions       Column map the current row must match
+     * @return A future of the transaction result: {@link com.igot.cb.pores.util.Constants#APPLIED}
+     * tells whether the record was updated and, if it was not, the current values of the
+     * condition columns follow, absent when the row does not exist.
+     */
+    CompletableFuture<Map<String, Object>> updateRecordByCompositeKeyIfAsync(String keyspaceName, String tableName,
+            Map<String, Object> updateAttributes, Map<String, Object> compositeKey, Map<String, Object> conditions);
+
+    /**
+     * Adds the given deltas to counter columns of the record identified by {@code key}.
+     *
+     * @param keyspaceName Keyspace name
+     * @param tableName    Table name, of a counter table
+     * @param deltas       Counter column map of the amounts to add
+     * @param key          Column map for the primary key
+     * @return A future of the response consisting of update query status
+     */
+    CompletableFuture<Map<String, Object>> incrementCountersAsync(String keyspaceName, String tableName,
+            Map<String, Long> deltas, Map<String, Object> key);
+}
@@ -0,0 +1,144 @@
+package com.igot.cb.transactional.cassandrautils;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ResultSet;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.igot.cb.pores.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Sends statements with {@code executeAsync}, with at most {@code cassandra.async.max.inflight}
+ * of them outstanding at once. A call made while all slots are taken never waits: its future
+ * fails right away with a {@link RejectedExecutionException} rather than queueing without
+ * bound in the driver.
+ */
+@Component
+public class AsyncCassandraOperationImpl implements AsyncCassandraOperation {
+
+    private Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+    @Autowired
+    CassandraConnectionManager connectionManager;
+
+    @Autowired
+    PreparedStatementCache preparedStatementCache;
+
+    @Autowired
+    MetricRegistry metricRegistry;
+
+    @Value("${cassandra.async.max.inflight}")
+    private int maxInFlight;
+
+    private Semaphore inFlight;
+    private Meter rejected;
+
+    @PostConstruct
+    public void init() {
+        inFlight = new Semaphore(maxInFlight);
+        metricRegistry.register(MetricRegistry.name(AsyncCassandraOperation.class, "inflight"),
+                (Gauge<Integer>) () -> maxInFlight - inFlight.availablePermits());
+        rejected = metricRegistry.meter(MetricRegistry.name(AsyncCassandraOperation.class, "rejected"));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> insertRecordIfNotExistsAsync(String keyspaceName, String tableName,
+                                                                           Map<String, Object> request) {
+        return execute(keyspaceName, tableName,
+                () -> preparedStatementCache.insert(keyspaceName, tableName, request, true),
+                results -> CassandraUtil.createResponse(results).get(0));
+    }
+
+    @Override
+    public CompletableFuture<List<Map<String, Object>>> getRecordsByPropertiesWithoutFilteringAsync(String keyspaceName,
+            String tableName, Map<String, Object> propertyMap, List<String> fields, Integer limit) {
+        return execute(keyspaceName, tableName,
+                () -> preparedStatementCache.select(keyspaceName, tableName, propertyMap, fields, limit, false),
+                results -> CassandraUtil.createResponse(results));
+    }
+
+    @Override
+    public <T> CompletableFuture<List<T>> getRecordsByPropertiesWithoutFilteringAsync(String keyspaceName,
+            String tableName, Map<String, Object> propertyMap, List<String> fields, Integer limit,
+            RowMapper<T> rowMapper) {
+        return execute(keyspaceName, tableName,
+                () -> preparedStatementCache.select(keyspaceName, tableName, propertyMap, fields, limit, false),
+                results -> CassandraUtil.createResponse(results, rowMapper));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> updateRecordByCompositeKeyIfAsync(String keyspaceName, String tableName,
+            Map<String, Object> updateAttributes, Map<String, Object> compositeKey, Map<String, Object> conditions) {
+        return execute(keyspaceName, tableName,
+                () -> preparedStatementCache.update(keyspaceName, tableName, updateAttributes, compositeKey, conditions),
+                results -> CassandraUtil.createResponse(results).get(0));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> incrementCountersAsync(String keyspaceName, String tableName,
+            Map<String, Long> deltas, Map<String, Object> key) {
+        return execute(keyspaceName, tableName,
+                () -> preparedStatementCache.increment(keyspaceName, tableName, deltas, key),
+                results -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put(Constants.RESPONSE, Constants.SUCCESS);
+                    return response;
+                });
+    }
+
+    private <T> CompletableFuture<T> execute(String keyspaceName, String tableName, Supplier<BoundStatement> statement,
+                                             Function<ResultSet, T> mapper) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!inFlight.tryAcquire()) {
+            rejected.mark();
+            future.completeExceptionally(new RejectedExecutionException(
+                    "Too many Cassandra requests in flight for " + tableName));
+            return future;
+        }
+        try {
+            BoundStatement boundStatement = statement.get();
+            Futures.addCallback(connectionManager.getSession(keyspaceName).executeAsync(boundStatement),
+                    new FutureCallback<ResultSet>() {
+                        @Override
+                        public void onSuccess(ResultSet results) {
+                            inFlight.release();
+                            try {
+                                future.complete(mapper.apply(results));
+                            } catch (Exception e) {
+                                future.completeExceptionally(e);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Throwable t) {
+                            inFlight.release();
+                            logger.error("Async Cassandra operation on " + tableName + " failed : " + t.getMessage(), t);
+                            future.completeExceptionally(t);
+                        }
+                    }, MoreExecutors.directExecutor());
+        } catch (Exception e) {
+            inFlight.release();
+            logger.error("Async Cassandra operation on " + tableName + " failed : " + e.getMessage(), e);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+}
@@ -1,13 +1,21 @@
 package com.igot.cb.transactional.cassandrautils;
 
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
 import com.datastax.driver.core.policies.DefaultRetryPolicy;
+import com.datastax.driver.core.policies.LatencyAwarePolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.PercentileSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import com.igot.cb.pores.exceptions.CustomException;
 import com.igot.cb.pores.util.Constants;
 import com.igot.cb.pores.util.PropertiesCache;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
@@ -30,6 +38,9 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
     private final Map<String, Session> cassandraSessionMap = new ConcurrentHashMap<>(2);
     private Cluster cluster;
 
+    @Autowired
+    private Environment environment;
+
     /**
      * Method invoked after bean creation for initialization
      */
@@ -68,7 +79,9 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
             poolingOptions.setHeartbeatIntervalSeconds(Integer.parseInt(cache.getProperty(Constants.HEARTBEAT_INTERVAL)));
             poolingOptions.setPoolTimeoutMillis(Integer.parseInt(cache.getProperty(Constants.POOL_TIMEOUT)));
             String[] hosts = StringUtils.split(cache.getProperty(Constants.CASSANDRA_CONFIG_HOST), ",");
-            cluster = createCluster(hosts, poolingOptions);
+            // Read through Spring so the environment variable overrides Spring honours apply here too.
+            String localDatacenter = environment.getProperty(Constants.CASSANDRA_LOCAL_DATACENTER);
+            cluster = createCluster(hosts, poolingOptions, localDatacenter);
             logClusterDetails(cluster);
         } catch (Exception e) {
             logger.error("Error creating Cassandra connection", e);
@@ -81,15 +94,32 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
      *
      * @param hosts          - Cassandra host configuration
      * @param poolingOptions -   // Configure connection pooling options
+     * @param localDatacenter - datacenter to route requests to, or null to let the driver pick one
      * @return - Cluster object with specified hosts and pooling options
      */
-    private static Cluster createCluster(String[] hosts, PoolingOptions poolingOptions) {
+    private static Cluster createCluster(String[] hosts, PoolingOptions poolingOptions, String localDatacenter) {
+        PropertiesCache cache = PropertiesCache.getInstance();
         Cluster.Builder builder = Cluster.builder()
                 .addContactPoints(hosts)
-                .withProtocolVersion(ProtocolVersion.V3)
                 .withRetryPolicy(DefaultRetryPolicy.INSTANCE)
                 .withTimestampGenerator(new AtomicMonotonicTimestampGenerator())
-                .withPoolingOptions(poolingOptions);
+                .withPoolingOptions(poolingOptions)
+                .withLoadBalancingPolicy(getLoadBalancingPolicy(cache, localDatacenter));
+
+        // Without an explicit version the driver negotiates the highest one the cluster supports.
+        String protocolVersion = cache.readProperty(Constants.PROTOCOL_VERSION);
+        if (StringUtils.isNotBlank(protocolVersion)) {
+            builder.withProtocolVersion(ProtocolVersion.valueOf(protocolVersion.trim().toUpperCase()));
+        }
+
+        String compression = cache.readProperty(Constants.COMPRESSION);
+        if (StringUtils.isNotBlank(compression)) {
+            builder.withCompression(ProtocolOptions.Compression.valueOf(compression.trim().toUpperCase()));
+        }
+
+        if (Boolean.parseBoolean(cache.readProperty(Constants.SPECULATIVE_EXECUTION_ENABLED))) {
+            builder.withSpeculativeExecutionPolicy(getSpeculativeExecutionPolicy(cache));
+        }
 
         ConsistencyLevel consistencyLevel = getConsistencyLevel();
         if (consistencyLevel != null) {
@@ -99,6 +129,50 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
         return builder.build();
     }
 
+    /**
+     * Builds the load balancing policy: round robin over the local datacenter, optionally
+     * preferring the fastest hosts and routing each statement to a replica of its partition.
+     *
+     * @param cache           - properties to read the policy configuration from
+     * @param localDatacenter - datacenter to route requests to, or null to let the driver pick one
+     * @return - load balancing policy from properties
+     */
+    private static LoadBalancingPolicy getLoadBalancingPolicy(PropertiesCache cache, String localDatacenter) {
+        DCAwareRoundRobinPolicy.Builder dcAwareBuilder = DCAwareRoundRobinPolicy.builder();
+        if (StringUtils.isNotBlank(localDatacenter)) {
+            dcAwareBuilder.withLocalDc(localDatacenter.trim());
+        }
+        String usedHostsPerRemoteDc = cache.readProperty(Constants.USED_HOSTS_PER_REMOTE_DC);
+        if (StringUtils.isNotBlank(usedHostsPerRemoteDc)) {
+            dcAwareBuilder.withUsedHostsPerRemoteDc(Integer.parseInt(usedHostsPerRemoteDc.trim()));
+        }
+        LoadBalancingPolicy policy = dcAwareBuilder.build();
+        if (Boolean.parseBoolean(cache.readProperty(Constants.LATENCY_AWARE_ROUTING))) {
+            policy = LatencyAwarePolicy.builder(policy).build();
+        }
+        if (Boolean.parseBoolean(cache.readProperty(Constants.TOKEN_AWARE_ROUTING))) {
+            policy = new TokenAwarePolicy(policy);
+        }
+        return policy;
+    }
+
+    /**
+     * Builds a speculative execution policy that sends an idempotent statement to another
+     * host once it has been running longer than the configured percentile of the cluster's
+     * recent latencies.
+     *
+     * @param cache - properties to read the policy configuration from
+     * @return - speculative execution policy from properties
+     */
+    private static SpeculativeExecutionPolicy getSpeculativeExecutionPolicy(PropertiesCache cache) {
+        PercentileTracker tracker = ClusterWidePercentileTracker
+                .builder(Long.parseLong(cache.getProperty(Constants.SPECULATIVE_EXECUTION_HIGHEST_LATENCY_MS)))
+                .build();
+        return new PercentileSpeculativeExecutionPolicy(tracker,
+                Double.parseDouble(cache.getProperty(Constants.SPECULATIVE_EXECUTION_PERCENTILE)),
+                Integer.parseInt(cache.getProperty(Constants.SPECULATIVE_EXECUTION_MAX)));
+    }
+
     /**
      * Retrieves consistency level from properties
      *
@@ -149,7 +223,8 @@ public class CassandraConnectionManagerImpl implements CassandraConnectionManage
 
     private void logClusterDetails(Cluster cluster) {
         final Metadata metadata = cluster.getMetadata();
-        logger.info("Connected to cluster: {}", metadata.getClusterName());
+        logger.info("Connected to cluster: {} using protocol {}", metadata.getClusterName(),
+                cluster.getConfiguration().getProtocolOptions().getProtocolVersion());
         metadata.getAllHosts().forEach(host ->
                 logger.info("Datacenter: {}; Host: {}; Rack: {}", host.getDatacenter(), host.getAddress(), host.getRack()));
     }
@@ -1,27 +1,18 @@
 package com.igot.cb.transactional.cassandrautils;
 
 import com.datastax.driver.core.BoundStatement;
-import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
-import com.datastax.driver.core.querybuilder.Clause;
-import com.datastax.driver.core.querybuilder.QueryBuilder;
-import com.datastax.driver.core.querybuilder.Select;
-import com.datastax.driver.core.querybuilder.Select.Builder;
-import com.datastax.driver.core.querybuilder.Select.Where;
 import com.igot.cb.pores.util.ApiResponse;
 import com.igot.cb.pores.util.Constants;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections.MapUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import com.datastax.driver.core.*;
-import com.datastax.driver.core.querybuilder.Update;
 
 import java.text.MessageFormat;
 import java.util.*;
-import java.util.Map.Entry;
 
 
 /**
@@ -36,78 +27,16 @@ public class CassandraOperationImpl implements CassandraOperation {
     @Autowired
     CassandraConnectionManager connectionManager;
 
-    private Select processQuery(String keyspaceName, String tableName, Map<String, Object> propertyMap,
-                                List<String> fields) {
-        Select selectQuery = null;
-
-        Builder selectBuilder;
-        if (CollectionUtils.isNotEmpty(fields)) {
-            String[] dbFields = fields.toArray(new String[fields.size()]);
-            selectBuilder = QueryBuilder.select(dbFields);
-        } else {
-            selectBuilder = QueryBuilder.select().all();
-        }
-        selectQuery = selectBuilder.from(keyspaceName, tableName);
-        if (MapUtils.isNotEmpty(propertyMap)) {
-            Where selectWhere = selectQuery.where();
-            for (Entry<String, Object> entry : propertyMap.entrySet()) {
-                if (entry.getValue() instanceof List) {
-                    List<Object> list = (List) entry.getValue();
-                    if (null != list) {
-                        Object[] propertyValues = list.toArray(new Object[list.size()]);
-                        Clause clause = QueryBuilder.in(entry.getKey(), propertyValues);
-                        selectWhere.and(clause);
-
-                    }
-                } else {
-
-                    Clause clause = QueryBuilder.eq(entry.getKey(), entry.getValue());
-                    selectWhere.and(clause);
-
-                }
-                selectQuery.allowFiltering();
-            }
-        }
-        return selectQuery;
-    }
-
-    private Select processQueryWithoutFiltering(String keyspaceName, String tableName, Map<String, Object> propertyMap,
-                                                List<String> fields) {
-        Select selectQuery = null;
-        Builder selectBuilder;
-        if (CollectionUtils.isNotEmpty(fields)) {
-            String[] dbFields = fields.toArray(new String[fields.size()]);
-            selectBuilder = QueryBuilder.select(dbFields);
-        } else {
-            selectBuilder = QueryBuilder.select().all();
-        }
-        selectQuery = selectBuilder.from(keyspaceName, tableName);
-        if (MapUtils.isNotEmpty(propertyMap)) {
-            Where selectWhere = selectQuery.where();
-            for (Entry<String, Object> entry : propertyMap.entrySet()) {
-                if (entry.getValue() instanceof List) {
-                    List<Object> list = (List) entry.getValue();
-                    if (null != list) {
-                        Object[] propertyValues = list.toArray(new Object[list.size()]);
-                        Clause clause = QueryBuilder.in(entry.getKey(), propertyValues);
-                        selectWhere.and(clause);
-                    }
-                } else {
-                    Clause clause = QueryBuilder.eq(entry.getKey(), entry.getValue());
-                    selectWhere.and(clause);
-                }
-            }
-        }
-        return selectQuery;
-    }
+    @Autowired
+    PreparedStatementCache preparedStatementCache;
 
     @Override
     public List<Map<String, Object>> getRecordsByPropertiesByKey(String keyspaceName,
                                                                  String tableName, Map<String, Object> propertyMap, List<String> fields, String key) {
-        Select selectQuery = null;
         List<Map<String, Object>> response = new ArrayList<>();
         try {
-            selectQuery = processQuery(keyspaceName, tableName, propertyMap, fields);
+            BoundStatement selectQuery = preparedStatementCache.select(keyspaceName, tableName, propertyMap, fields, null,
+                    MapUtils.isNotEmpty(propertyMap));
             ResultSet results = connectionManager.getSession(keyspaceName).execute(selectQuery);
             response = CassandraUtil.createResponse(results);
             logger.info(response.toString());
@@ -121,17 +50,9 @@ public class CassandraOperationImpl implements CassandraOperation {
     @Override
     public Object insertRecord(String keyspaceName, String tableName, Map<String, Object> request) {
         ApiResponse response = new ApiResponse();
-        String query = CassandraUtil.getPreparedStatement(keyspaceName, tableName, request);
         try {
-            PreparedStatement statement = connectionManager.getSession(keyspaceName).prepare(query);
-            BoundStatement boundStatement = new BoundStatement(statement);
-            Iterator<Object> iterator = request.values().iterator();
-            Object[] array = new Object[request.keySet().size()];
-            int i = 0;
-            while (iterator.hasNext()) {
-                array[i++] = iterator.next();
-            }
-            connectionManager.getSession(keyspaceName).execute(boundStatement.bind(array));
+            BoundStatement boundStatement = preparedStatementCache.insert(keyspaceName, tableName, request);
+            connectionManager.getSession(keyspaceName).execute(boundStatement);
             response.put(Constants.RESPONSE, Constants.SUCCESS);
         } catch (Exception e) {
             String errMsg = String.format("Exception occurred while inserting record to %s %s", tableName, e.getMessage());
@@ -144,13 +65,9 @@ public class CassandraOperationImpl implements CassandraOperation {
 
     @Override
     public List<Map<String, Object>> getRecordsByPropertiesWithoutFiltering(String keyspaceName, String tableName, Map<String, Object> propertyMap, List<String> fields, Integer limit) {
-        Select selectQuery = null;
         List<Map<String, Object>> response = new ArrayList<>();
         try {
-            selectQuery = processQueryWithoutFiltering(keyspaceName, tableName, propertyMap, fields);
-            if (limit != null) {
-                selectQuery = selectQuery.limit(limit);
-            }
+            BoundStatement selectQuery = preparedStatementCache.select(keyspaceName, tableName, propertyMap, fields, limit, false);
             ResultSet results = connectionManager.getSession(keyspaceName).execute(selectQuery);
             response = CassandraUtil.createResponse(results);
 
@@ -166,23 +83,13 @@ public class CassandraOperationImpl implements CassandraOperation {
         long startTime = System.currentTimeMillis();
         logger.debug("Cassandra Service updateRecord method started at ==" + startTime);
         Map<String,Object> response = new HashMap<>();
-        String query = getUpdateQueryStatement(keyspaceName, tableName, request);
+        String query = null;
         try {
-            PreparedStatement statement = connectionManager.getSession(keyspaceName).prepare(query);
-            Object[] array = new Object[request.size()];
-            int i = 0;
-            String str = "";
-            int index = query.lastIndexOf(Constants.SET.trim());
-            str = query.substring(index + 4);
-            str = str.replace(Constants.EQUAL_WITH_QUE_MARK, "");
-            str = str.replace(Constants.WHERE_ID, "");
-            str = str.replace(Constants.SEMICOLON, "");
-            String[] arr = str.split(",");
-            for (String key : arr) {
-                array[i++] = request.get(key.trim());
-            }
-            array[i] = request.get(Constants.ID);
-            BoundStatement boundStatement = statement.bind(array);
+            Map<String, Object> assignments = new HashMap<>(request);
+            assignments.remove(Constants.ID);
+            BoundStatement boundStatement = preparedStatementCache.update(keyspaceName, tableName, assignments,
+                    Collections.singletonMap(Constants.ID, request.get(Constants.ID)));
+            query = boundStatement.preparedStatement().getQueryString();
             connectionManager.getSession(keyspaceName).execute(boundStatement);
             response.put(Constants.RESPONSE, Constants.SUCCESS);
             if (tableName.equalsIgnoreCase(Constants.USER)) {
@@ -203,19 +110,6 @@ public class CassandraOperationImpl implements CassandraOperation {
         return response;
     }
 
-    public static String getUpdateQueryStatement(
-            String keyspaceName, String tableName, Map<String, Object> map) {
-        StringBuilder query =
-                new StringBuilder(
-                        Constants.UPDATE + keyspaceName + Constants.DOT + tableName + Constants.SET);
-        Set<String> key = new HashSet<>(map.keySet());
-        key.remove(Constants.ID);
-        query.append(String.join(" = ? ,", key));
-        query.append(
-                Constants.EQUAL_WITH_QUE_MARK + Constants.WHERE_ID + Constants.EQUAL_WITH_QUE_MARK);
-        return query.toString();
-    }
-
     protected void logQueryElapseTime(
             String operation, long startTime, String query) {
         logger.info("Cassandra query : " + query);
@@ -231,19 +125,9 @@ public class CassandraOperationImpl implements CassandraOperation {
     public Map<String, Object> updateRecordByCompositeKey(String keyspaceName, String tableName, Map<String, Object> updateAttributes,
                                                           Map<String, Object> compositeKey) {
         Map<String, Object> response = new HashMap<>();
-        Statement updateQuery = null;
         try {
             Session session = connectionManager.getSession(keyspaceName);
-            Update update = QueryBuilder.update(keyspaceName, tableName);
-            Update.Assignments assignments = update.with();
-            Update.Where where = update.where();
-            updateAttributes.entrySet().stream().forEach(x -> {
-                assignments.and(QueryBuilder.set(x.getKey(), x.getValue()));
-            });
-            compositeKey.entrySet().stream().forEach(x -> {
-                where.and(QueryBuilder.eq(x.getKey(), x.getValue()));
-            });
-            updateQuery = where;
+            BoundStatement updateQuery = preparedStatementCache.update(keyspaceName, tableName, updateAttributes, compositeKey);
             session.execute(updateQuery);
             response.put(Constants.RESPONSE, Constants.SUCCESS);
         } catch (Exception e) {
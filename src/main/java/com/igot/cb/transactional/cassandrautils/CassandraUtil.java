@@ -6,7 +6,7 @@ import com.datastax.driver.core.Row;
 import com.igot.cb.pores.util.Constants;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Mahesh RV
@@ -19,6 +19,8 @@ public final class CassandraUtil {
 
     private static final CassandraPropertyReader propertiesCache = CassandraPropertyReader.getInstance();
 
+    private static final ConcurrentHashMap<String, String[]> columnNamesCache = new ConcurrentHashMap<>();
+
 
     public static String getPreparedStatement(
             String keyspaceName, String tableName, Map<String, Object> map) {
@@ -39,42 +41,59 @@ public final class CassandraUtil {
 
 
     public static List<Map<String, Object>> createResponse(ResultSet results) {
-        List<Map<String, Object>> responseList = new ArrayList<>();
-        Map<String, String> columnsMapping = fetchColumnsMapping(results);
-        Iterator<Row> rowIterator = results.iterator();
-        rowIterator.forEachRemaining(
-                row -> {
-                    Map<String, Object> rowMap = new HashMap<>();
-                    columnsMapping
-                            .forEach((key, value) -> rowMap.put(key, row.getObject(value)));
-                    responseList.add(rowMap);
-                });
+        String[] columnNames = fetchColumnNames(results.getColumnDefinitions());
+        List<Map<String, Object>> responseList = new ArrayList<>(results.getAvailableWithoutFetching());
+        for (Row row : results) {
+            responseList.add(toMap(row, columnNames));
+        }
         return responseList;
     }
 
     public static Map<String, Object> createResponse(ResultSet results, String key) {
+        String[] columnNames = fetchColumnNames(results.getColumnDefinitions());
         Map<String, Object> responseList = new HashMap<>();
-        Map<String, String> columnsMapping = fetchColumnsMapping(results);
-        Iterator<Row> rowIterator = results.iterator();
-        rowIterator.forEachRemaining(
-                row -> {
-                    Map<String, Object> rowMap = new HashMap<>();
-                    columnsMapping
-                            .forEach((key1, value) -> rowMap.put(key1, row.getObject(value)));
+        for (Row row : results) {
+            Map<String, Object> rowMap = toMap(row, columnNames);
+            responseList.put((String) rowMap.get(key), rowMap);
+        }
+        return responseList;
+    }
 
-                    responseList.put((String) rowMap.get(key), rowMap);
-                });
+    /**
+     * Maps every row of the result with the given mapper.
+     */
+    public static <T> List<T> createResponse(ResultSet results, RowMapper<T> rowMapper) {
+        List<T> responseList = new ArrayList<>(results.getAvailableWithoutFetching());
+        for (Row row : results) {
+            responseList.add(rowMapper.map(row));
+        }
         return responseList;
     }
 
-    public static Map<String, String> fetchColumnsMapping(ResultSet results) {
-        return results
-                .getColumnDefinitions()
-                .asList()
-                .stream()
-                .collect(
-                        Collectors.toMap(
-                                d -> propertiesCache.readProperty(d.getName()).trim(),
-                                ColumnDefinitions.Definition::getName));
+    /**
+     * Returns the response key of each column, by column index. The keys are resolved once
+     * per keyspace, table and column list and cached from then on.
+     */
+    private static String[] fetchColumnNames(ColumnDefinitions definitions) {
+        StringBuilder shape = new StringBuilder();
+        for (int i = 0; i < definitions.size(); i++) {
+            shape.append(definitions.getKeyspace(i)).append(Constants.DOT).append(definitions.getTable(i))
+                    .append(Constants.DOT).append(definitions.getName(i)).append(Constants.COMMA);
+        }
+        return columnNamesCache.computeIfAbsent(shape.toString(), key -> {
+            String[] columnNames = new String[definitions.size()];
+            for (int i = 0; i < columnNames.length; i++) {
+                columnNames[i] = propertiesCache.readProperty(definitions.getName(i)).trim();
+            }
+            return columnNames;
+        });
+    }
+
+    private static Map<String, Object> toMap(Row row, String[] columnNames) {
+        Map<String, Object> rowMap = new HashMap<>((int) (columnNames.length / 0.75f) + 1);
+        for (int i = 0; i < columnNames.length; i++) {
+            rowMap.put(columnNames[i], row.getObject(i));
+        }
+        return rowMap;
     }
 }
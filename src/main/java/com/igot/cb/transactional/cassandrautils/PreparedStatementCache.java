@@ -0,0 +1,185 @@
+package com.igot.cb.transactional.cassandrautils;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.querybuilder.Select;
+import com.datastax.driver.core.querybuilder.Update;
+import org.apache.commons.collections.CollectionUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Prepares each statement shape once and binds values to it by name.
+ * <p>
+ * A shape is the keyspace, table, statement kind and the columns involved, so the same
+ * statement is reused whatever the values are. {@code IN} conditions bind their list to a
+ * single marker, which keeps the shape independent of the number of values.
+ */
+@Component
+public class PreparedStatementCache {
+
+    private static final String LIMIT_MARKER = "row_limit";
+    private static final String CONDITION_MARKER_PREFIX = "if_";
+
+    private final ConcurrentHashMap<String, PreparedStatement> statements = new ConcurrentHashMap<>();
+
+    @Autowired
+    CassandraConnectionManager connectionManager;
+
+    /**
+     * Binds a select of the given fields, or all columns when there are none. List values
+     * become {@code IN} conditions and the others equality conditions.
+     */
+    public BoundStatement select(String keyspaceName, String tableName, Map<String, Object> propertyMap,
+                                 List<String> fields, Integer limit, boolean allowFiltering) {
+        Map<String, Object> conditions = propertyMap == null ? new TreeMap<>() : new TreeMap<>(propertyMap);
+        StringBuilder shape = new StringBuilder("select|").append(keyspaceName).append('.').append(tableName)
+                .append('|').append(fields == null ? "" : String.join(",", fields)).append('|');
+        conditions.forEach((column, value) -> shape.append(column).append(value instanceof List ? " in," : " eq,"));
+        shape.append('|').append(limit != null).append('|').append(allowFiltering);
+        PreparedStatement statement = prepare(keyspaceName, shape.toString(), () -> {
+            Select select = CollectionUtils.isNotEmpty(fields)
+                    ? QueryBuilder.select(fields.toArray(new String[0])).from(keyspaceName, tableName)
+                    : QueryBuilder.select().all().from(keyspaceName, tableName);
+            Select.Where where = select.where();
+            conditions.forEach((column, value) -> where.and(value instanceof List
+                    ? QueryBuilder.in(column, QueryBuilder.bindMarker(column))
+                    : QueryBuilder.eq(column, QueryBuilder.bindMarker(column))));
+            if (limit != null) {
+                select.limit(QueryBuilder.bindMarker(LIMIT_MARKER));
+            }
+            if (allowFiltering) {
+                select.allowFiltering();
+            }
+            return select;
+        });
+        BoundStatement boundStatement = bind(statement, conditions);
+        // Reads are safe to send to a second replica when speculative execution kicks in.
+        boundStatement.setIdempotent(true);
+        if (limit != null) {
+            boundStatement.setInt(LIMIT_MARKER, limit);
+        }
+        return boundStatement;
+    }
+
+    public BoundStatement insert(String keyspaceName, String tableName, Map<String, Object> values) {
+        return insert(keyspaceName, tableName, values, false);
+    }
+
+    /**
+     * Binds an insert, made conditional on the row not existing yet when {@code ifNotExists}
+     * is set.
+     */
+    public BoundStatement insert(String keyspaceName, String tableName, Map<String, Object> values,
+                                 boolean ifNotExists) {
+        Map<String, Object> columns = new TreeMap<>(values);
+        String shape = "insert|" + keyspaceName + '.' + tableName + '|' + String.join(",", columns.keySet())
+                + '|' + ifNotExists;
+        PreparedStatement statement = prepare(keyspaceName, shape, () -> {
+            Insert insert = QueryBuilder.insertInto(keyspaceName, tableName);
+            columns.keySet().forEach(column -> insert.value(column, QueryBuilder.bindMarker(column)));
+            if (ifNotExists) {
+                insert.ifNotExists();
+            }
+            return insert;
+        });
+        return bind(statement, columns);
+    }
+
+    /**
+     * Binds an update of the given columns of the row identified by {@code keys}.
+     */
+    public BoundStatement update(String keyspaceName, String tableName, Map<String, Object> assignments,
+                                 Map<String, Object> keys) {
+        return update(keyspaceName, tableName, assignments, keys, Collections.emptyMap());
+    }
+
+    /**
+     * Binds an update of the given columns of the row identified by {@code keys}, applied only
+     * if every column in {@code conditions} currently has the given value.
+     */
+    public BoundStatement update(String keyspaceName, String tableName, Map<String, Object> assignments,
+                                 Map<String, Object> keys, Map<String, Object> conditions) {
+        Map<String, Object> columns = new TreeMap<>(assignments);
+        Map<String, Object> keyColumns = new TreeMap<>(keys);
+        Map<String, Object> conditionColumns = new TreeMap<>();
+        // Conditions get their own markers, as a column may be both assigned and tested.
+        conditions.forEach((column, value) -> conditionColumns.put(CONDITION_MARKER_PREFIX + column, value));
+        String shape = "update|" + keyspaceName + '.' + tableName + '|' + String.join(",", columns.keySet())
+                + '|' + String.join(",", keyColumns.keySet()) + '|' + String.join(",", conditionColumns.keySet());
+        PreparedStatement statement = prepare(keyspaceName, shape, () -> {
+            Update update = QueryBuilder.update(keyspaceName, tableName);
+            Update.Assignments with = update.with();
+            columns.keySet().forEach(column -> with.and(QueryBuilder.set(column, QueryBuilder.bindMarker(column))));
+            Update.Where where = update.where();
+            keyColumns.keySet().forEach(column -> where.and(QueryBuilder.eq(column, QueryBuilder.bindMarker(column))));
+            conditions.keySet().forEach(column -> update.onlyIf(
+                    QueryBuilder.eq(column, QueryBuilder.bindMarker(CONDITION_MARKER_PREFIX + column))));
+            return update;
+        });
+        BoundStatement boundStatement = bind(statement, columns);
+        bind(boundStatement, keyColumns);
+        return bind(boundStatement, conditionColumns);
+    }
+
+    /**
+     * Binds an increment of the given counter columns of the row identified by {@code keys}.
+     * Negative deltas decrement.
+     */
+    public BoundStatement increment(String keyspaceName, String tableName, Map<String, Long> deltas,
+                                    Map<String, Object> keys) {
+        Map<String, Object> columns = new TreeMap<>(deltas);
+        Map<String, Object> keyColumns = new TreeMap<>(keys);
+        String shape = "increment|" + keyspaceName + '.' + tableName + '|' + String.join(",", columns.keySet())
+                + '|' + String.join(",", keyColumns.keySet());
+        PreparedStatement statement = prepare(keyspaceName, shape, () -> {
+            Update update = QueryBuilder.update(keyspaceName, tableName);
+            Update.Assignments with = update.with();
+            columns.keySet().forEach(column -> with.and(QueryBuilder.incr(column, QueryBuilder.bindMarker(column))));
+            Update.Where where = update.where();
+            keyColumns.keySet().forEach(column -> where.and(QueryBuilder.eq(column, QueryBuilder.bindMarker(column))));
+            return update;
+        });
+        BoundStatement boundStatement = bind(statement, columns);
+        return bind(boundStatement, keyColumns);
+    }
+
+    private PreparedStatement prepare(String keyspaceName, String shape, Supplier<RegularStatement> statement) {
+        PreparedStatement prepared = statements.get(shape);
+        if (prepared == null) {
+            prepared = statements.computeIfAbsent(shape,
+                    key -> connectionManager.getSession(keyspaceName).prepare(statement.get()));
+        }
+        return prepared;
+    }
+
+    private static BoundStatement bind(PreparedStatement statement, Map<String, Object> values) {
+        return bind(statement.bind(), values);
+    }
+
+    private static BoundStatement bind(BoundStatement boundStatement, Map<String, Object> values) {
+        PreparedStatement statement = boundStatement.preparedStatement();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (entry.getValue() == null) {
+                boundStatement.setToNull(entry.getKey());
+                continue;
+            }
+            DataType type = statement.getVariables().getType(entry.getKey());
+            TypeCodec<Object> codec = statement.getCodecRegistry().codecFor(type, entry.getValue());
+            boundStatement.set(entry.getKey(), entry.getValue(), codec);
+        }
+        return boundStatement;
+    }
+}
@@ -0,0 +1,13 @@
+package com.igot.cb.transactional.cassandrautils;
+
+import com.datastax.driver.core.Row;
+
+/**
+ * Maps a Cassandra row to a typed value, for queries that do not need the generic
+ * column-name keyed map built by {@link CassandraUtil#createResponse(com.datastax.driver.core.ResultSet)}.
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    T map(Row row);
+}